@@ -108,7 +108,7 @@ After=network.target
 [Service]
 User=${APP_USER}
 Type=simple
-Environment="SPRING_PROFILES_ACTIVE=prod"
+Environment="SPRING_PROFILES_ACTIVE=prod,wal"
 WorkingDirectory=${APP_PATH}
 ExecStart=/usr/bin/java -jar ${JAR_PATH}
 SuccessExitStatus=143
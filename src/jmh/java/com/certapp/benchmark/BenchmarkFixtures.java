@@ -0,0 +1,36 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.InternalCaService;
+import com.certapp.service.KeyPairPool;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 基准测试共用的对象构造，不启动 Spring 容器
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static KeyPairPool keyPairPool(KeyPairPool.Algorithm algorithm) {
+        KeyPairPool keyPairPool = new KeyPairPool();
+        ReflectionTestUtils.setField(keyPairPool, "defaultAlgorithm", algorithm);
+        return keyPairPool;
+    }
+
+    /**
+     * 在临时目录中生成CA的内部CA服务
+     */
+    static InternalCaService internalCa(Path directory, KeyPairPool.Algorithm algorithm) throws Exception {
+        InternalCaService internalCa = new InternalCaService(keyPairPool(algorithm));
+        ReflectionTestUtils.setField(internalCa, "directory", directory.toString());
+        ReflectionTestUtils.setField(internalCa, "caCommonName", "Benchmark CA");
+        ReflectionTestUtils.setField(internalCa, "caKeyAlgorithm", algorithm);
+        ReflectionTestUtils.setField(internalCa, "caValidityDays", 3650L);
+        ReflectionTestUtils.setField(internalCa, "leafValidityDays", 90L);
+        internalCa.load();
+        return internalCa;
+    }
+}
@@ -0,0 +1,59 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.KeyPairPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shredzone.acme4j.util.CSRBuilder;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与 LetsEncryptService.finalizeOrder 相同的 CSR 构建方式，按密钥算法和SAN数量对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsrBenchmark {
+
+    @Param({"RSA_2048", "EC_P256"})
+    public KeyPairPool.Algorithm algorithm;
+
+    @Param({"1", "100"})
+    public int domainCount;
+
+    private KeyPair keyPair;
+    private List<String> domains;
+
+    @Setup
+    public void setUp() {
+        keyPair = algorithm.generate();
+        domains = new ArrayList<>();
+        for (int i = 0; i < domainCount; i++) {
+            domains.add("host" + i + ".example.com");
+        }
+    }
+
+    @Benchmark
+    public byte[] buildCsr() throws IOException {
+        CSRBuilder csrBuilder = new CSRBuilder();
+        csrBuilder.addDomains(domains);
+        csrBuilder.sign(keyPair);
+        return csrBuilder.getEncoded();
+    }
+}
@@ -0,0 +1,100 @@
+package com.certapp.benchmark;
+
+import com.certapp.config.HttpFastPathFilter;
+import com.certapp.service.InMemoryChallengeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 明文端口快速通道在多线程下的开销：验证响应查询（命中/未命中）、应答验证请求和HTTPS重定向
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FastPathBenchmark {
+    private static final int TOKENS = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        InMemoryChallengeStore store;
+        HttpFastPathFilter filter;
+
+        @Setup
+        public void setUp() {
+            store = new InMemoryChallengeStore();
+            ReflectionTestUtils.setField(store, "maxEntries", TOKENS * 2);
+            for (int i = 0; i < TOKENS; i++) {
+                store.put("token" + i, "token" + i + ".thumbprint", Duration.ofHours(1));
+            }
+            filter = new HttpFastPathFilter(store, () -> true, Set.of(80), Set.of("localhost"), 443, 301);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+        int next;
+        MockHttpServletRequest challenge;
+        MockHttpServletRequest redirect;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp() {
+            challenge = request("/.well-known/acme-challenge/token42");
+            redirect = request("/index.html");
+            redirect.setQueryString("a=1");
+            response = new MockHttpServletResponse();
+        }
+
+        private static MockHttpServletRequest request(String uri) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+            request.setServerName("www.example.com");
+            request.setLocalPort(80);
+            return request;
+        }
+    }
+
+    @Benchmark
+    public byte[] lookupHit(Shared shared, Requests requests) {
+        requests.next = (requests.next + 1) % TOKENS;
+        return shared.store.get("token" + requests.next);
+    }
+
+    @Benchmark
+    public byte[] lookupMiss(Shared shared) {
+        return shared.store.get("missing");
+    }
+
+    @Benchmark
+    public int serveChallenge(Shared shared, Requests requests) throws Exception {
+        requests.response.reset();
+        shared.filter.doFilter(requests.challenge, requests.response, new MockFilterChain());
+        return requests.response.getStatus();
+    }
+
+    @Benchmark
+    public int redirect(Shared shared, Requests requests) throws Exception {
+        requests.response.reset();
+        shared.filter.doFilter(requests.redirect, requests.response, new MockFilterChain());
+        return requests.response.getStatus();
+    }
+}
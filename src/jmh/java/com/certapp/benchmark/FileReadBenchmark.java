@@ -0,0 +1,82 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.FileService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整个文件读入内存（FileService.readFileAsync）与 FileChannel.transferTo 零拷贝输出的对比。
+ * 零拷贝的目标是 /dev/null，近似于下载时 sendfile 直接写 socket。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileReadBenchmark {
+
+    @Param({"4096", "1048576", "16777216"})
+    public int fileSize;
+
+    private ExecutorService executor;
+    private FileService fileService;
+    private Path file;
+    private FileChannel sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        fileService = new FileService(executor);
+        file = Files.createTempFile("bench", ".bin");
+        byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        Files.write(file, content);
+        sink = FileChannel.open(Path.of("/dev/null"), StandardOpenOption.WRITE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sink.close();
+        executor.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] readFileAsync() throws Exception {
+        return fileService.readFileAsync(file.toString()).get();
+    }
+
+    @Benchmark
+    public long transferTo() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, sink);
+            }
+            return position;
+        }
+    }
+}
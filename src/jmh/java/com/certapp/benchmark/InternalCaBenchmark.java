@@ -0,0 +1,57 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.InternalCaService;
+import com.certapp.service.KeyPairPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内部CA签发叶子证书（不含密钥生成），多线程时反映批量签发接口的单机吞吐
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InternalCaBenchmark {
+
+    @Param({"RSA_2048", "EC_P256"})
+    public KeyPairPool.Algorithm caAlgorithm;
+
+    private InternalCaService internalCa;
+    private PublicKey leafKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        internalCa = BenchmarkFixtures.internalCa(Files.createTempDirectory("bench-ca"), caAlgorithm);
+        leafKey = KeyPairPool.Algorithm.EC_P256.generate().getPublic();
+    }
+
+    @Benchmark
+    public X509Certificate sign() {
+        return internalCa.sign("leaf.internal", List.of("leaf.internal"), leafKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public X509Certificate signContended() {
+        return internalCa.sign("leaf.internal", List.of("leaf.internal"), leafKey);
+    }
+}
@@ -0,0 +1,51 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.CertificateGeneratorService;
+import com.certapp.service.KeyPairPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密钥生成与自签名证书生成
+ * CertificateGeneratorService 使用未初始化的密钥池，每次调用都同步生成密钥，即池子未命中时的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyAndCertificateBenchmark {
+
+    @Param({"RSA_2048", "RSA_3072", "EC_P256", "EC_P384"})
+    public KeyPairPool.Algorithm algorithm;
+
+    private CertificateGeneratorService generator;
+
+    @Setup
+    public void setUp() {
+        generator = new CertificateGeneratorService(BenchmarkFixtures.keyPairPool(algorithm));
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() {
+        return algorithm.generate();
+    }
+
+    @Benchmark
+    public byte[] generateCertificate() throws Exception {
+        return generator.generateCertificate("bench.example.com", "CertApp");
+    }
+}
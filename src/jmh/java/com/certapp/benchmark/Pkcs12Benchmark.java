@@ -0,0 +1,70 @@
+package com.certapp.benchmark;
+
+import com.certapp.service.InternalCaService;
+import com.certapp.service.KeyPairPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PKCS12 密钥库的生成与解析，方式与 ArtifactStore 写入、KeyMaterialRegistry 读取相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Pkcs12Benchmark {
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @Param({"RSA_2048", "EC_P256"})
+    public KeyPairPool.Algorithm algorithm;
+
+    private PrivateKey privateKey;
+    private X509Certificate[] chain;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        InternalCaService internalCa = BenchmarkFixtures.internalCa(Files.createTempDirectory("bench-ca"), algorithm);
+        InternalCaService.Issued issued = internalCa.issueForHost("bench.example.com", List.of());
+        privateKey = issued.privateKey;
+        chain = new X509Certificate[]{issued.certificate, internalCa.getCaCertificate()};
+        encoded = store();
+    }
+
+    @Benchmark
+    public byte[] store() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("tomcat", privateKey, PASSWORD, chain);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        keyStore.store(out, PASSWORD);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object load() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(encoded), PASSWORD);
+        return keyStore.getKey("tomcat", PASSWORD);
+    }
+}
@@ -0,0 +1,167 @@
+package com.certapp.benchmark;
+
+import com.certapp.model.CertificateStatus;
+import com.certapp.service.StatusWriteBehind;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 本地 SQLite 状态写入基准测试
+ * 对比三种方式在多线程并发更新 certificates.status 时的吞吐：
+ * 1. 默认配置（回滚日志 + synchronous=FULL），每次更新一个事务
+ * 2. WAL + synchronous=NORMAL，每次更新一个事务
+ * 3. WAL + synchronous=NORMAL，经 StatusWriteBehind 合并后由单线程批量提交
+ * 三种方式执行的都是生产环境的 StatusWriteBehind.UPDATE_SQL（含 change_version 分配）。
+ *
+ * 运行: ./gradlew sqliteBenchmark [-Pargs="行数 更新次数 线程数"]
+ */
+public class SqliteWriteBenchmark {
+    private static final CertificateStatus[] STATUSES = {
+        CertificateStatus.QUEUED, CertificateStatus.AUTHORIZING, CertificateStatus.FINALIZING, CertificateStatus.ISSUED};
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        System.out.printf("rows=%d, updates=%d, threads=%d%n", rows, updates, threads);
+
+        run("default, autocommit", "", rows, updates, threads, false);
+        run("WAL, autocommit", "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=5000", rows, updates, threads, false);
+        run("WAL, write-behind", "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=5000", rows, updates, threads, true);
+    }
+
+    private static void run(String name, String options, int rows, int updates, int threads,
+                            boolean writeBehind) throws Exception {
+        Path dir = Files.createTempDirectory("sqlite-bench");
+        String url = "jdbc:sqlite:" + dir.resolve("bench.db") + options;
+        prepare(url, rows);
+
+        AtomicLong busy = new AtomicLong();
+        AtomicLong written = new AtomicLong();
+        long start = System.nanoTime();
+        if (writeBehind) {
+            runWriteBehind(url, rows, updates, threads, written);
+        } else {
+            runAutocommit(url, rows, updates, threads, busy, written);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%-22s %10.0f updates/s  (%d rows written, %d busy errors, %.2fs)%n",
+            name, updates / seconds, written.get(), busy.get(), seconds);
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static void prepare(String url, int rows) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("create table certificates (id integer primary key, name varchar not null, "
+                + "status varchar not null, description varchar, updated_at timestamp, change_version bigint)");
+            statement.executeUpdate("create index idx_certificates_change_version on certificates (change_version)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into certificates (id, name, status) values (?, ?, 'QUEUED')")) {
+                for (int i = 1; i <= rows; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "host" + i + ".example.com");
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * 每个线程一个连接，每次更新单独提交
+     */
+    private static void runAutocommit(String url, int rows, int updates, int threads,
+                                      AtomicLong busy, AtomicLong written) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int count = updates / threads;
+            new Thread(() -> {
+                try (Connection connection = DriverManager.getConnection(url);
+                     PreparedStatement update = connection.prepareStatement(StatusWriteBehind.UPDATE_SQL)) {
+                    for (int i = 0; i < count; i++) {
+                        bind(update, ThreadLocalRandom.current().nextInt(rows) + 1, i);
+                        try {
+                            update.executeUpdate();
+                            written.incrementAndGet();
+                        } catch (SQLException e) {
+                            busy.incrementAndGet();
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+    }
+
+    /**
+     * 生产线程调用 StatusWriteBehind.update，由它的写线程批量提交；每写入一行分配一个变更版本号，
+     * 结束后按最大版本号统计实际写入的行数
+     */
+    private static void runWriteBehind(String url, int rows, int updates, int threads,
+                                       AtomicLong written) throws Exception {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            // 启用写后队列时不会用到 CertificateRepository
+            StatusWriteBehind writeBehind = new StatusWriteBehind(null, jdbcTemplate, transactionTemplate);
+            ReflectionTestUtils.setField(writeBehind, "enabled", true);
+            ReflectionTestUtils.setField(writeBehind, "flushIntervalMs", 50L);
+            ReflectionTestUtils.setField(writeBehind, "batchSize", 200);
+            writeBehind.start();
+
+            CountDownLatch produced = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                int count = updates / threads;
+                new Thread(() -> {
+                    for (int i = 0; i < count; i++) {
+                        writeBehind.update((long) ThreadLocalRandom.current().nextInt(rows) + 1,
+                            STATUSES[i % STATUSES.length], "step " + i);
+                    }
+                    produced.countDown();
+                }).start();
+            }
+            produced.await();
+            // 停止时把缓冲区剩余的状态全部写入
+            writeBehind.stop();
+            written.set(jdbcTemplate.queryForObject(
+                "select coalesce(max(change_version), 0) from certificates", Long.class));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static void bind(PreparedStatement update, int id, int sequence) throws SQLException {
+        update.setString(1, STATUSES[sequence % STATUSES.length].name());
+        update.setString(2, "step " + sequence);
+        update.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+        update.setInt(4, id);
+    }
+}
@@ -0,0 +1,276 @@
+package com.certapp.loadtest;
+
+import com.certapp.CertificateApplication;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateStatusEvent;
+import com.certapp.service.CertificateChangeSync;
+import com.certapp.service.KeyMaterialRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多节点协调压测
+ * 在同一个进程中启动 N 个应用实例，共用一个 SQLite 数据库文件、制品目录和 jdbc 验证存储，
+ * 客户端把每个域名同时提交到相邻的两个节点，两边应返回同一张证书；随后等待每个存活节点都发布该证书的终态事件，
+ * 没有处理这张证书的节点只能通过 change_version 同步转发得到，相当于负载均衡把 SSE 订阅分到了其他节点。
+ * 可以在提交到一半时关闭一个节点，它手上的任务在租约过期后由其他节点接手。
+ * 结束后检查：每个域名只被下单一次（关闭节点时被接手的任务除外）、两个节点返回不同证书的次数、
+ * 有多少次终态事件没有转发到所有节点、各节点的签发数量，
+ * 以及每个存活节点是否都通过 change_version 同步安装了全部证书。
+ *
+ * 运行: ./gradlew clusterLoadTest [-Pargs="--nodes=3 --requests=300 --concurrency=30 --kill-node=true"]
+ */
+public class ClusterLoadTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int nodes = Integer.parseInt(options.getOrDefault("nodes", "3"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "300"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "30"));
+        boolean killNode = Boolean.parseBoolean(options.getOrDefault("kill-node", "false"));
+        long leaseSeconds = Long.parseLong(options.getOrDefault("lease-seconds", "10"));
+        long timeoutSeconds = Long.parseLong(options.getOrDefault("timeout-seconds", "180"));
+        // 一个节点收到终态后，其他节点最多再等多久（同步间隔 500ms，加上写后队列和租约换手）
+        long relayTimeoutSeconds = Long.parseLong(options.getOrDefault("relay-timeout-seconds", "30"));
+        FakeAcmeServer.Options acme = new FakeAcmeServer.Options();
+        acme.latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "20"));
+        acme.validationDelayMs = Long.parseLong(options.getOrDefault("validation-delay-ms", "200"));
+        acme.finalizeDelayMs = Long.parseLong(options.getOrDefault("finalize-delay-ms", "200"));
+
+        int[] ports = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ports[i] = freePort();
+        }
+        // 验证请求只发给第一个节点，其他节点创建的验证靠共用的 jdbc 存储应答
+        acme.challengeBaseUrl = "http://127.0.0.1:" + ports[0];
+        Path workDir = Files.createTempDirectory("certapp-cluster");
+        System.out.printf("nodes=%d, requests=%d, concurrency=%d, killNode=%s, lease=%ds%n",
+            nodes, requests, concurrency, killNode, leaseSeconds);
+        System.out.println("工作目录: " + workDir);
+
+        List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+        try (FakeAcmeServer server = new FakeAcmeServer(0, acme).start()) {
+            // 每个节点各自收到的终态事件
+            List<Map<Long, CompletableFuture<CertificateStatus>>> completions = new ArrayList<>();
+            List<MeterRegistry> registries = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                ConfigurableApplicationContext context = startNode(server, i, ports[i], workDir, leaseSeconds);
+                Map<Long, CompletableFuture<CertificateStatus>> nodeCompletions = new ConcurrentHashMap<>();
+                context.addApplicationListener(event -> {
+                    if (event instanceof PayloadApplicationEvent
+                        && ((PayloadApplicationEvent<?>) event).getPayload() instanceof CertificateStatusEvent) {
+                        CertificateStatusEvent status = (CertificateStatusEvent) ((PayloadApplicationEvent<?>) event).getPayload();
+                        if (status.getStatus().isTerminal()) {
+                            nodeCompletions.computeIfAbsent(status.getId(), id -> new CompletableFuture<>())
+                                .complete(status.getStatus());
+                        }
+                    }
+                });
+                contexts.add(context);
+                completions.add(nodeCompletions);
+                registries.add(context.getBean(MeterRegistry.class));
+            }
+
+            String run = Long.toString(System.currentTimeMillis(), 36);
+            HttpClient client = HttpClient.newHttpClient();
+            int killed = killNode && nodes > 1 ? nodes - 1 : -1;
+            AtomicInteger next = new AtomicInteger();
+            AtomicBoolean closed = new AtomicBoolean();
+            AtomicInteger issued = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            AtomicInteger split = new AtomicInteger();
+            AtomicInteger notRelayed = new AtomicInteger();
+            List<String> domains = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                domains.add("cl-" + run + "-" + i + ".loadtest.example");
+            }
+
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            long start = System.nanoTime();
+            for (int c = 0; c < concurrency; c++) {
+                clients.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        if (i == requests / 2 && killed >= 0) {
+                            System.out.printf("关闭节点 node-%d%n", killed);
+                            contexts.get(killed).close();
+                            closed.set(true);
+                            // 正在等待这个节点事件的请求不再等它
+                            completions.get(killed).values().forEach(future -> future.complete(null));
+                        }
+                        // 关闭的节点不再接收新请求
+                        int live = killed >= 0 && i >= requests / 2 ? nodes - 1 : nodes;
+                        try {
+                            String body = JSON.writeValueAsString(Map.of(
+                                "name", domains.get(i), "type", "LETS_ENCRYPT", "email", "loadtest@example.com"));
+                            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+                            for (int node : live > 1 ? new int[]{i % live, (i + 1) % live} : new int[]{0}) {
+                                responses.add(client.sendAsync(
+                                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + ports[node] + "/api/certificates/one-click"))
+                                        .header("Content-Type", "application/json")
+                                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                                    HttpResponse.BodyHandlers.ofString()));
+                            }
+                            Set<Long> ids = new HashSet<>();
+                            for (CompletableFuture<HttpResponse<String>> future : responses) {
+                                HttpResponse<String> response = future.get(timeoutSeconds, TimeUnit.SECONDS);
+                                if (response.statusCode() == 200 || response.statusCode() == 202) {
+                                    ids.add(JSON.readTree(response.body()).get("id").asLong());
+                                }
+                            }
+                            if (ids.isEmpty()) {
+                                failed.incrementAndGet();
+                                continue;
+                            }
+                            if (ids.size() > 1) {
+                                split.incrementAndGet();
+                            }
+                            Long id = ids.iterator().next();
+                            CertificateStatus status = null;
+                            boolean relayed = true;
+                            for (int node = 0; node < nodes; node++) {
+                                if (node == killed && closed.get()) {
+                                    continue;
+                                }
+                                try {
+                                    CertificateStatus nodeStatus = completions.get(node)
+                                        .computeIfAbsent(id, key -> new CompletableFuture<>())
+                                        .get(status == null ? timeoutSeconds : relayTimeoutSeconds, TimeUnit.SECONDS);
+                                    if (nodeStatus != null) {
+                                        status = nodeStatus;
+                                    }
+                                } catch (TimeoutException e) {
+                                    relayed = false;
+                                }
+                            }
+                            if (!relayed) {
+                                notRelayed.incrementAndGet();
+                            }
+                            (status == CertificateStatus.ISSUED ? issued : failed).incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%n请求: %d, 签发成功: %d, 失败: %d, 耗时: %.1fs%n", requests, issued.get(), failed.get(), seconds);
+            for (int i = 0; i < nodes; i++) {
+                Timer timer = registries.get(i).find("certapp.issuance.duration").tag("outcome", "success").timer();
+                System.out.printf("  node-%d 签发: %d%s%n", i, timer == null ? 0 : timer.count(), i == killed ? " (已关闭)" : "");
+            }
+            System.out.printf("两个节点返回不同证书: %d%n", split.get());
+            System.out.printf("终态事件未转发到所有节点: %d%n", notRelayed.get());
+            reportDuplicates(server.orderCounts(), killed >= 0);
+            reportSync(contexts, killed, domains, timeoutSeconds);
+        } finally {
+            contexts.forEach(ConfigurableApplicationContext::close);
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startNode(FakeAcmeServer server, int node, int port, Path workDir,
+                                                            long leaseSeconds) throws IOException {
+        List<String> properties = List.of(
+            "--server.port=" + port,
+            "--certapp.https.port=" + freePort(),
+            "--certapp.acme.server-url=" + server.directoryUrl(),
+            "--spring.datasource.url=jdbc:sqlite:" + workDir.resolve("certdb.db"),
+            "--certapp.artifacts.dir=" + workDir.resolve("store"),
+            "--certapp.internal-ca.dir=" + workDir.resolve("internal-ca"),
+            "--certapp.files.dir=" + workDir.resolve("files"),
+            "--logging.file.name=" + workDir.resolve("application.log"),
+            "--certapp.challenge.store=jdbc",
+            "--certapp.cluster.node-id=node-" + node,
+            "--certapp.cluster.lease-seconds=" + leaseSeconds,
+            "--certapp.cluster.heartbeat-seconds=" + Math.max(1, leaseSeconds / 3),
+            "--certapp.cluster.sweep-seconds=" + Math.max(1, leaseSeconds / 2),
+            "--certapp.cluster.sync-interval-ms=500",
+            "--certapp.admission.account-orders=1000000",
+            "--certapp.admission.domain-certificates=1000000",
+            "--logging.level.com.certapp=INFO");
+        return new SpringApplication(CertificateApplication.class).run(properties.toArray(new String[0]));
+    }
+
+    /**
+     * 同一个域名下单超过一次说明有两个节点同时处理了同一个任务；关闭节点时被接手的任务会重新下单
+     */
+    private static void reportDuplicates(Map<String, Integer> orderCounts, boolean nodeKilled) {
+        long duplicated = orderCounts.values().stream().filter(count -> count > 1).count();
+        System.out.printf("重复下单的域名: %d%s%n", duplicated, nodeKilled ? " (关闭节点后被接手的任务会重新下单)" : "");
+    }
+
+    /**
+     * 等待各存活节点同步到最新的 change_version，再检查每个域名的证书是否都已安装
+     */
+    private static void reportSync(List<ConfigurableApplicationContext> contexts, int killed, List<String> domains,
+                                   long timeoutSeconds) throws InterruptedException {
+        Long latest = contexts.get(0).getBean(JdbcTemplate.class)
+            .queryForObject("select coalesce(max(change_version), 0) from certificates", Long.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        for (int i = 0; i < contexts.size(); i++) {
+            if (i == killed) {
+                continue;
+            }
+            CertificateChangeSync sync = contexts.get(i).getBean(CertificateChangeSync.class);
+            while (sync.getSyncedVersion() < latest && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+            KeyMaterialRegistry registry = contexts.get(i).getBean(KeyMaterialRegistry.class);
+            long installed = domains.stream().filter(domain -> registry.get(domain) != null).count();
+            System.out.printf("  node-%d 同步版本: %d/%d, 已安装证书: %d/%d%n",
+                i, sync.getSyncedVersion(), latest, installed, domains.size());
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package com.certapp.loadtest;
+
+import com.certapp.service.InternalCaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jws.JsonWebSignature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的假ACME服务端，用于离线压测
+ * 基于JDK自带的 HttpServer，实现 directory、newNonce、newAccount、newOrder、authorization、
+ * HTTP-01 挑战（回调本应用的 /.well-known/acme-challenge/）、finalize 和证书下载。
+ * JWS 签名、nonce 和 key authorization 都会校验，所以走的是 acme4j 的真实代码路径；
+ * 证书由启动时生成的临时CA签发。可以配置每个请求的延迟、验证和出证的耗时，以及注入错误的比例。
+ */
+public class FakeAcmeServer implements AutoCloseable {
+    private static final String PROBLEM_PREFIX = "urn:ietf:params:acme:error:";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * 延迟与故障注入参数
+     */
+    public static class Options {
+        /** 每个ACME请求在应答前的延迟，模拟到CA的往返时间 */
+        public long latencyMs = 20;
+        /** 挑战被触发后多久开始回调验证 */
+        public long validationDelayMs = 200;
+        /** finalize 之后订单保持 processing 的时间 */
+        public long finalizeDelayMs = 200;
+        /** POST 请求直接返回 serverInternal 的比例 */
+        public double errorRate;
+        /** POST 请求返回 badNonce 的比例，acme4j 会自动重试 */
+        public double badNonceRate;
+        /** 挑战验证判定为失败的比例 */
+        public double invalidRate;
+        /** new-order 返回 rateLimited 的比例 */
+        public double rateLimitRate;
+        /** rateLimited 应答中的 Retry-After 秒数 */
+        public long retryAfterSeconds = 2;
+        /** HTTP-01 回调的地址，例如 http://127.0.0.1:8080，域名本身不需要解析 */
+        public String challengeBaseUrl;
+    }
+
+    private static class AccountState {
+        final String id;
+        final PublicKey publicKey;
+        final String thumbprint;
+
+        AccountState(String id, PublicKey publicKey, String thumbprint) {
+            this.id = id;
+            this.publicKey = publicKey;
+            this.thumbprint = thumbprint;
+        }
+    }
+
+    private static class OrderState {
+        final String id;
+        final AccountState account;
+        final List<String> domains;
+        final List<AuthzState> authorizations = new ArrayList<>();
+        volatile String status = "pending";
+        volatile String certificatePem;
+        volatile Map<String, Object> error;
+
+        OrderState(String id, AccountState account, List<String> domains) {
+            this.id = id;
+            this.account = account;
+            this.domains = domains;
+        }
+    }
+
+    private static class AuthzState {
+        final String id;
+        final String domain;
+        final OrderState order;
+        final String token;
+        volatile String status = "pending";
+        volatile Map<String, Object> error;
+
+        AuthzState(String id, String domain, OrderState order, String token) {
+            this.id = id;
+            this.domain = domain;
+            this.order = order;
+            this.token = token;
+        }
+    }
+
+    /**
+     * 以 Problem 文档应答的请求错误
+     */
+    private static class ProblemException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+        final String type;
+        long retryAfterSeconds;
+
+        ProblemException(int status, String type, String detail) {
+            super(detail);
+            this.status = status;
+            this.type = type;
+        }
+    }
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService scheduler;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<String, Long> nonces = new ConcurrentHashMap<>();
+    private final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+    private final Map<String, AccountState> accountsByThumbprint = new ConcurrentHashMap<>();
+    private final Map<String, OrderState> orders = new ConcurrentHashMap<>();
+    private final Map<String, AuthzState> authorizations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> ordersByDomain = new ConcurrentHashMap<>();
+    private final KeyPair caKeyPair;
+    private final X509Certificate caCertificate;
+    private final String baseUrl;
+
+    public FakeAcmeServer(int port, Options options) throws Exception {
+        this.options = options;
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        caKeyPair = generator.generateKeyPair();
+        caCertificate = createCaCertificate();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        handlers = Executors.newFixedThreadPool(64, daemonThreads("fake-acme-"));
+        scheduler = Executors.newScheduledThreadPool(4, daemonThreads("fake-acme-validator-"));
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        // 客户端只使用最近一次应答中的 nonce，其余的定期清理
+        scheduler.scheduleAtFixedRate(() -> {
+            long expired = System.nanoTime() - TimeUnit.MINUTES.toNanos(10);
+            nonces.values().removeIf(issuedAt -> issuedAt < expired);
+        }, 1, 1, TimeUnit.MINUTES);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public FakeAcmeServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * 供 certapp.acme.server-url 使用的目录地址
+     */
+    public String directoryUrl() {
+        return baseUrl + "/directory";
+    }
+
+    /**
+     * 各域名被下单的次数，多节点压测用来检查同一个域名是否被重复签发
+     */
+    public Map<String, Integer> orderCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        ordersByDomain.forEach((domain, count) -> counts.put(domain, count.get()));
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            sleep(options.latencyMs);
+            try {
+                if ("/directory".equals(path)) {
+                    respond(exchange, 200, directory());
+                } else if ("/new-nonce".equals(path)) {
+                    exchange.getResponseHeaders().add("Replay-Nonce", newNonce());
+                    exchange.getResponseHeaders().add("Cache-Control", "no-store");
+                    exchange.sendResponseHeaders("HEAD".equals(method) ? 200 : 204, -1);
+                } else if ("POST".equals(method)) {
+                    handlePost(exchange, path);
+                } else {
+                    throw new ProblemException(405, "malformed", "不支持的请求: " + method + " " + path);
+                }
+            } catch (ProblemException e) {
+                Map<String, Object> problem = problem(e.type, e.getMessage());
+                problem.put("status", e.status);
+                exchange.getResponseHeaders().add("Replay-Nonce", newNonce());
+                if (e.retryAfterSeconds > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", Long.toString(e.retryAfterSeconds));
+                }
+                send(exchange, e.status, "application/problem+json", JSON.writeValueAsBytes(problem));
+            }
+        } catch (Exception e) {
+            // 连接已经断开或应答已经发送，忽略
+        }
+    }
+
+    private void handlePost(HttpExchange exchange, String path) throws Exception {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < options.errorRate) {
+            throw new ProblemException(500, "serverInternal", "注入的服务端错误");
+        }
+        if (roll < options.errorRate + options.badNonceRate) {
+            throw new ProblemException(400, "badNonce", "注入的 nonce 错误");
+        }
+
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        Map<?, ?> envelope = JSON.readValue(body, Map.class);
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setCompactSerialization(envelope.get("protected") + "." + envelope.get("payload") + "." + envelope.get("signature"));
+        if (nonces.remove(String.valueOf(jws.getHeader("nonce"))) == null) {
+            throw new ProblemException(400, "badNonce", "nonce 无效或已使用");
+        }
+
+        if ("/new-account".equals(path)) {
+            PublicJsonWebKey jwk = jws.getJwkHeader();
+            verify(jws, jwk.getPublicKey());
+            newAccount(exchange, jwk);
+            return;
+        }
+
+        String kid = jws.getKeyIdHeaderValue();
+        AccountState account = kid == null ? null : accounts.get(kid.substring(kid.lastIndexOf('/') + 1));
+        if (account == null) {
+            throw new ProblemException(400, "accountDoesNotExist", "账户不存在: " + kid);
+        }
+        verify(jws, account.publicKey);
+        String payload = jws.getPayload();
+
+        String[] parts = path.split("/");
+        String id = parts.length > 2 ? parts[2] : "";
+        switch (parts.length > 1 ? parts[1] : "") {
+            case "new-order":
+                newOrder(exchange, account, JSON.readValue(payload, Map.class));
+                break;
+            case "acct":
+                respond(exchange, 200, accountJson());
+                break;
+            case "order":
+                respond(exchange, 200, orderJson(order(id, account)));
+                break;
+            case "authz":
+                respond(exchange, 200, authzJson(authz(id, account)));
+                break;
+            case "chall":
+                respond(exchange, 200, challengeJson(trigger(authz(id, account), payload)));
+                break;
+            case "finalize":
+                respond(exchange, 200, orderJson(finalizeOrder(order(id, account), JSON.readValue(payload, Map.class))));
+                break;
+            case "cert":
+                OrderState order = order(id, account);
+                if (order.certificatePem == null) {
+                    throw new ProblemException(404, "malformed", "证书尚未签发");
+                }
+                exchange.getResponseHeaders().add("Replay-Nonce", newNonce());
+                send(exchange, 200, "application/pem-certificate-chain",
+                    order.certificatePem.getBytes(StandardCharsets.US_ASCII));
+                break;
+            default:
+                throw new ProblemException(404, "malformed", "未知资源: " + path);
+        }
+    }
+
+    private void newAccount(HttpExchange exchange, PublicJsonWebKey jwk) throws Exception {
+        String thumbprint = jwk.calculateBase64urlEncodedThumbprint("SHA-256");
+        AccountState existing = accountsByThumbprint.get(thumbprint);
+        AccountState account = existing != null ? existing
+            : accountsByThumbprint.computeIfAbsent(thumbprint, t -> {
+                AccountState created = new AccountState(nextId(), jwk.getPublicKey(), t);
+                accounts.put(created.id, created);
+                return created;
+            });
+        exchange.getResponseHeaders().add("Location", baseUrl + "/acct/" + account.id);
+        respond(exchange, existing != null ? 200 : 201, accountJson());
+    }
+
+    private void newOrder(HttpExchange exchange, AccountState account, Map<?, ?> request) throws Exception {
+        if (ThreadLocalRandom.current().nextDouble() < options.rateLimitRate) {
+            ProblemException limited = new ProblemException(429, "rateLimited", "注入的速率限制: too many new orders recently");
+            limited.retryAfterSeconds = options.retryAfterSeconds;
+            throw limited;
+        }
+        List<String> domains = new ArrayList<>();
+        for (Object identifier : (List<?>) request.get("identifiers")) {
+            domains.add(String.valueOf(((Map<?, ?>) identifier).get("value")));
+        }
+        OrderState order = new OrderState(nextId(), account, domains);
+        for (String domain : domains) {
+            AuthzState authz = new AuthzState(nextId(), domain, order, token());
+            order.authorizations.add(authz);
+            authorizations.put(authz.id, authz);
+        }
+        orders.put(order.id, order);
+        domains.forEach(domain -> ordersByDomain.computeIfAbsent(domain, d -> new AtomicInteger()).incrementAndGet());
+        exchange.getResponseHeaders().add("Location", baseUrl + "/order/" + order.id);
+        respond(exchange, 201, orderJson(order));
+    }
+
+    /**
+     * 触发挑战：立即返回 processing，延迟后回调应用验证 key authorization
+     */
+    private AuthzState trigger(AuthzState authz, String payload) {
+        if (payload.isEmpty() || !"pending".equals(authz.status)) {
+            // POST-as-GET 只是查询状态
+            return authz;
+        }
+        authz.status = "processing";
+        scheduler.schedule(() -> validate(authz), options.validationDelayMs, TimeUnit.MILLISECONDS);
+        return authz;
+    }
+
+    private void validate(AuthzState authz) {
+        String expected = authz.token + "." + authz.order.account.thumbprint;
+        String url = options.challengeBaseUrl + "/.well-known/acme-challenge/" + authz.token;
+        try {
+            if (ThreadLocalRandom.current().nextDouble() < options.invalidRate) {
+                fail(authz, problem("unauthorized", "注入的验证失败: " + authz.domain));
+                return;
+            }
+            HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(10)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200 && expected.equals(response.body().trim())) {
+                authz.status = "valid";
+                if (authz.order.authorizations.stream().allMatch(a -> "valid".equals(a.status))) {
+                    authz.order.status = "ready";
+                }
+            } else {
+                fail(authz, problem("unauthorized", "验证响应不匹配: " + url + " status=" + response.statusCode()));
+            }
+        } catch (Exception e) {
+            fail(authz, problem("connection", "无法连接验证地址: " + url + ": " + e));
+        }
+    }
+
+    private void fail(AuthzState authz, Map<String, Object> error) {
+        authz.error = error;
+        authz.status = "invalid";
+        authz.order.error = error;
+        authz.order.status = "invalid";
+    }
+
+    private OrderState finalizeOrder(OrderState order, Map<?, ?> request) throws ProblemException {
+        if (!"ready".equals(order.status)) {
+            throw new ProblemException(403, "orderNotReady", "订单状态为 " + order.status);
+        }
+        byte[] der = Base64.getUrlDecoder().decode(String.valueOf(request.get("csr")));
+        order.status = "processing";
+        scheduler.schedule(() -> issue(order, der), options.finalizeDelayMs, TimeUnit.MILLISECONDS);
+        return order;
+    }
+
+    private void issue(OrderState order, byte[] csrDer) {
+        try {
+            PKCS10CertificationRequest csr = new PKCS10CertificationRequest(csrDer);
+            PublicKey publicKey = new JcaPEMKeyConverter().getPublicKey(csr.getSubjectPublicKeyInfo());
+            GeneralNames names = new GeneralNames(order.domains.stream()
+                .map(domain -> new GeneralName(GeneralName.dNSName, domain))
+                .toArray(GeneralName[]::new));
+            Instant now = Instant.now();
+            X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(caCertificate,
+                InternalCaService.randomSerial(), Date.from(now.minusSeconds(60)),
+                Date.from(now.plus(Duration.ofDays(90))), new X500Name("CN=" + order.domains.get(0)), publicKey)
+                .addExtension(Extension.subjectAlternativeName, false, names)
+                .addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+            X509Certificate certificate = sign(builder);
+            order.certificatePem = InternalCaService.toPem(certificate) + InternalCaService.toPem(caCertificate);
+            order.status = "valid";
+        } catch (Exception e) {
+            order.error = problem("badCSR", "无法签发: " + e.getMessage());
+            order.status = "invalid";
+        }
+    }
+
+    private X509Certificate createCaCertificate() throws Exception {
+        X500Name name = new X500Name("CN=Fake ACME Root");
+        Instant now = Instant.now();
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, InternalCaService.randomSerial(),
+            Date.from(now.minusSeconds(60)), Date.from(now.plus(Duration.ofDays(365))),
+            name, caKeyPair.getPublic())
+            .addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        return sign(builder);
+    }
+
+    private X509Certificate sign(X509v3CertificateBuilder builder) throws Exception {
+        return new JcaX509CertificateConverter().getCertificate(builder.build(
+            new JcaContentSignerBuilder(InternalCaService.signatureAlgorithm(caKeyPair.getPrivate()))
+                .build(caKeyPair.getPrivate())));
+    }
+
+    private OrderState order(String id, AccountState account) throws ProblemException {
+        OrderState order = orders.get(id);
+        if (order == null || order.account != account) {
+            throw new ProblemException(404, "malformed", "订单不存在: " + id);
+        }
+        return order;
+    }
+
+    private AuthzState authz(String id, AccountState account) throws ProblemException {
+        AuthzState authz = authorizations.get(id);
+        if (authz == null || authz.order.account != account) {
+            throw new ProblemException(404, "malformed", "授权不存在: " + id);
+        }
+        return authz;
+    }
+
+    private Map<String, Object> directory() {
+        Map<String, Object> directory = new LinkedHashMap<>();
+        directory.put("newNonce", baseUrl + "/new-nonce");
+        directory.put("newAccount", baseUrl + "/new-account");
+        directory.put("newOrder", baseUrl + "/new-order");
+        directory.put("meta", Map.of("termsOfService", baseUrl + "/terms"));
+        return directory;
+    }
+
+    private Map<String, Object> accountJson() {
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("status", "valid");
+        account.put("contact", List.of());
+        return account;
+    }
+
+    private Map<String, Object> orderJson(OrderState order) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("status", order.status);
+        json.put("expires", Instant.now().plus(Duration.ofDays(7)).toString());
+        List<Map<String, String>> identifiers = new ArrayList<>();
+        order.domains.forEach(domain -> identifiers.add(Map.of("type", "dns", "value", domain)));
+        json.put("identifiers", identifiers);
+        List<String> authzUrls = new ArrayList<>();
+        order.authorizations.forEach(authz -> authzUrls.add(baseUrl + "/authz/" + authz.id));
+        json.put("authorizations", authzUrls);
+        json.put("finalize", baseUrl + "/finalize/" + order.id);
+        if (order.certificatePem != null) {
+            json.put("certificate", baseUrl + "/cert/" + order.id);
+        }
+        if (order.error != null) {
+            json.put("error", order.error);
+        }
+        return json;
+    }
+
+    private Map<String, Object> authzJson(AuthzState authz) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("status", "processing".equals(authz.status) ? "pending" : authz.status);
+        json.put("expires", Instant.now().plus(Duration.ofDays(7)).toString());
+        json.put("identifier", Map.of("type", "dns", "value", authz.domain));
+        json.put("challenges", List.of(challengeJson(authz)));
+        return json;
+    }
+
+    private Map<String, Object> challengeJson(AuthzState authz) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("type", "http-01");
+        json.put("url", baseUrl + "/chall/" + authz.id);
+        json.put("status", authz.status);
+        json.put("token", authz.token);
+        if (authz.error != null) {
+            json.put("error", authz.error);
+        }
+        return json;
+    }
+
+    private static Map<String, Object> problem(String type, String detail) {
+        Map<String, Object> problem = new LinkedHashMap<>();
+        problem.put("type", PROBLEM_PREFIX + type);
+        problem.put("detail", detail);
+        return problem;
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        exchange.getResponseHeaders().add("Replay-Nonce", newNonce());
+        send(exchange, status, "application/json", JSON.writeValueAsBytes(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void verify(JsonWebSignature jws, Key key) throws Exception {
+        jws.setKey(key);
+        if (!jws.verifySignature()) {
+            throw new ProblemException(400, "malformed", "JWS 签名无效");
+        }
+    }
+
+    private String newNonce() {
+        String nonce = token();
+        nonces.put(nonce, System.nanoTime());
+        return nonce;
+    }
+
+    private String token() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String nextId() {
+        return Long.toString(ids.incrementAndGet());
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package com.certapp.loadtest;
+
+import com.certapp.CertificateApplication;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateStatusEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 证书签发压测
+ * 启动 FakeAcmeServer 和完整的应用（使用临时目录下的数据库和证书存储），
+ * 用 N 个并发客户端循环调用 /api/certificates/one-click，每个客户端等到上一张证书签发完成（或失败）后才发下一个请求，
+ * 统计签发吞吐和从提交到 ISSUED 的 p50/p90/p99 耗时，并输出各阶段的平均耗时。
+ *
+ * 运行: ./gradlew loadTest [-Pargs="--requests=200 --concurrency=20 --latency-ms=20 --error-rate=0.01 --rate-limit-rate=0.05"]
+ */
+public class IssuanceLoadTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int requests = Integer.parseInt(options.getOrDefault("requests", "200"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "20"));
+        long timeoutSeconds = Long.parseLong(options.getOrDefault("timeout-seconds", "120"));
+        FakeAcmeServer.Options acme = new FakeAcmeServer.Options();
+        acme.latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "20"));
+        acme.validationDelayMs = Long.parseLong(options.getOrDefault("validation-delay-ms", "200"));
+        acme.finalizeDelayMs = Long.parseLong(options.getOrDefault("finalize-delay-ms", "200"));
+        acme.errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        acme.badNonceRate = Double.parseDouble(options.getOrDefault("bad-nonce-rate", "0"));
+        acme.invalidRate = Double.parseDouble(options.getOrDefault("invalid-rate", "0"));
+        acme.rateLimitRate = Double.parseDouble(options.getOrDefault("rate-limit-rate", "0"));
+        acme.retryAfterSeconds = Long.parseLong(options.getOrDefault("retry-after-seconds", "2"));
+
+        int appPort = freePort();
+        acme.challengeBaseUrl = "http://127.0.0.1:" + appPort;
+        Path workDir = Files.createTempDirectory("certapp-loadtest");
+        System.out.printf("requests=%d, concurrency=%d, latency=%dms, validation=%dms, finalize=%dms, "
+                + "errorRate=%.3f, badNonceRate=%.3f, invalidRate=%.3f, rateLimitRate=%.3f%n",
+            requests, concurrency, acme.latencyMs, acme.validationDelayMs, acme.finalizeDelayMs,
+            acme.errorRate, acme.badNonceRate, acme.invalidRate, acme.rateLimitRate);
+        System.out.println("工作目录: " + workDir);
+
+        try (FakeAcmeServer server = new FakeAcmeServer(0, acme).start();
+             ConfigurableApplicationContext context = startApplication(server, appPort, workDir)) {
+            Map<Long, CompletableFuture<CertificateStatus>> completions = new ConcurrentHashMap<>();
+            context.addApplicationListener(event -> {
+                if (event instanceof PayloadApplicationEvent
+                    && ((PayloadApplicationEvent<?>) event).getPayload() instanceof CertificateStatusEvent) {
+                    CertificateStatusEvent status = (CertificateStatusEvent) ((PayloadApplicationEvent<?>) event).getPayload();
+                    if (status.getStatus() == CertificateStatus.ISSUED || status.getStatus() == CertificateStatus.FAILED) {
+                        completions.computeIfAbsent(status.getId(), id -> new CompletableFuture<>()).complete(status.getStatus());
+                    }
+                }
+            });
+
+            String run = Long.toString(System.currentTimeMillis(), 36);
+            HttpClient client = HttpClient.newHttpClient();
+            URI endpoint = URI.create("http://127.0.0.1:" + appPort + "/api/certificates/one-click");
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            long start = System.nanoTime();
+            for (int c = 0; c < concurrency; c++) {
+                clients.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long submitted = System.nanoTime();
+                        try {
+                            String body = JSON.writeValueAsString(Map.of(
+                                "name", "lt-" + run + "-" + i + ".loadtest.example", "type", "LETS_ENCRYPT",
+                                "email", "loadtest@example.com"));
+                            HttpResponse<String> response = client.send(HttpRequest.newBuilder(endpoint)
+                                    .header("Content-Type", "application/json")
+                                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                                HttpResponse.BodyHandlers.ofString());
+                            if (response.statusCode() != 200 && response.statusCode() != 202) {
+                                rejected.incrementAndGet();
+                                continue;
+                            }
+                            JsonNode certificate = JSON.readTree(response.body());
+                            CertificateStatus status = completions
+                                .computeIfAbsent(certificate.get("id").asLong(), id -> new CompletableFuture<>())
+                                .get(timeoutSeconds, TimeUnit.SECONDS);
+                            if (status == CertificateStatus.ISSUED) {
+                                latencies.add(System.nanoTime() - submitted);
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            report(requests, latencies, failed.get(), rejected.get(), seconds);
+            reportPhases(context.getBean(MeterRegistry.class));
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startApplication(FakeAcmeServer server, int appPort, Path workDir)
+            throws IOException {
+        List<String> properties = List.of(
+            "--server.port=" + appPort,
+            "--certapp.https.port=" + freePort(),
+            "--certapp.acme.server-url=" + server.directoryUrl(),
+            "--spring.datasource.url=jdbc:sqlite:" + workDir.resolve("certdb.db"),
+            "--certapp.artifacts.dir=" + workDir.resolve("store"),
+            "--certapp.internal-ca.dir=" + workDir.resolve("internal-ca"),
+            "--certapp.files.dir=" + workDir.resolve("files"),
+            "--logging.file.name=" + workDir.resolve("application.log"),
+            // 压测域名都在 loadtest.example 下，放开本地的账户和域名配额，只保留 CA 返回的 rateLimited
+            "--certapp.admission.account-orders=1000000",
+            "--certapp.admission.domain-certificates=1000000",
+            "--logging.level.com.certapp=INFO");
+        return new SpringApplication(CertificateApplication.class).run(properties.toArray(new String[0]));
+    }
+
+    private static void report(int requests, List<Long> latencies, int failed, int rejected, double seconds) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%n请求: %d, 签发成功: %d, 失败: %d, 被拒绝: %d, 耗时: %.1fs%n",
+            requests, sorted.size(), failed, rejected, seconds);
+        System.out.printf("签发吞吐: %.1f 张/秒%n", sorted.size() / seconds);
+        if (!sorted.isEmpty()) {
+            System.out.printf("提交到签发完成: p50=%.0fms, p90=%.0fms, p99=%.0fms, max=%.0fms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted.get(sorted.size() - 1) / 1e6);
+        }
+    }
+
+    private static void reportPhases(MeterRegistry registry) {
+        System.out.println("\n各阶段耗时 (成功):");
+        for (Timer timer : registry.find("certapp.issuance.phase").tag("outcome", "success").timers()) {
+            System.out.printf("  %-10s count=%-6d mean=%.1fms max=%.1fms%n", timer.getId().getTag("phase"),
+                timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+        }
+        registry.find("certapp.acme.errors").counters().forEach(counter ->
+            System.out.printf("ACME错误: phase=%s, type=%s, count=%.0f%n",
+                counter.getId().getTag("phase"), counter.getId().getTag("type"), counter.count()));
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1e6;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.certapp.config;
 
+import com.certapp.service.KeyMaterialRegistry;
+import com.certapp.service.KeyMaterialRegistry.KeyMaterial;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.connector.Connector;
-import org.apache.coyote.http11.Http11NioProtocol;
+import org.apache.coyote.http11.AbstractHttp11JsseProtocol;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.tomcat.util.net.SSLHostConfigCertificate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
 import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
 import org.springframework.stereotype.Component;
-import javax.net.ssl.SSLContext;
-import java.io.FileInputStream;
-import java.security.KeyStore;
-import java.security.SecureRandom;
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 运行时管理唯一的HTTPS连接器
+ * 每个域名对应一个按SNI匹配的 SSLHostConfig，新签发或续期的证书原子替换对应条目，
+ * 已建立的连接继续使用旧的SSL上下文，不会被中断。
+ */
 @Slf4j
 @Component
 public class DynamicSSLConfig {
@@ -19,61 +31,122 @@ public class DynamicSSLConfig {
     @Autowired
     private ServletWebServerApplicationContext applicationContext;
     
-    public void enableSSL(String keystorePath, String keystorePassword) {
+    @Value("${certapp.https.port:443}")
+    private int httpsPort;
+    
+    @Autowired
+    private KeyMaterialRegistry keyMaterialRegistry;
+    
+    private volatile Connector httpsConnector;
+    private final Map<String, KeyMaterial> installed = new ConcurrentHashMap<>();
+    
+    /**
+     * 密钥库文件在外部被替换时，只重新安装受影响的域名
+     */
+    @PostConstruct
+    public void listenForChanges() {
+        keyMaterialRegistry.addListener(this::installCertificate);
+    }
+    
+    /**
+     * 为一组域名安装（或替换）证书
+     */
+    public synchronized void installCertificate(Collection<String> hostNames, KeyMaterial material) {
         try {
-            // 加载密钥库
-            KeyStore keyStore = KeyStore.getInstance("PKCS12");
-            try (FileInputStream fis = new FileInputStream(keystorePath)) {
-                keyStore.load(fis, keystorePassword.toCharArray());
-            }
-            
-            // 创建SSL上下文
-            SSLContext sslContext = createSSLContext(keyStore, keystorePassword);
-            
-            // 获取Tomcat服务器
-            TomcatWebServer tomcatWebServer = (TomcatWebServer) applicationContext.getWebServer();
-            org.apache.catalina.Server server = tomcatWebServer.getTomcat().getServer();
-            
-            // 为每个服务添加HTTPS连接器
-            for (org.apache.catalina.Service service : server.findServices()) {
-                // 创建新的HTTPS连接器
-                Connector connector = new Connector("HTTP/1.1");
-                connector.setScheme("https");
-                connector.setSecure(true);
-                connector.setPort(443); // HTTPS标准端口
-                
-                Http11NioProtocol protocol = (Http11NioProtocol) connector.getProtocolHandler();
-                protocol.setSSLEnabled(true);
-                protocol.setKeystoreFile(keystorePath);
-                protocol.setKeystorePass(keystorePassword);
-                protocol.setKeystoreType("PKCS12");
-                
-                // 添加新连接器
-                service.addConnector(connector);
+            Connector connector = httpsConnector != null ? httpsConnector : findSecureConnector();
+            if (connector == null) {
+                startConnector(hostNames, material);
+            } else {
+                AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+                for (String hostName : hostNames) {
+                    installHostConfig(protocol, hostName.toLowerCase(Locale.ROOT), material);
+                }
+                httpsConnector = connector;
             }
-            
-            log.info("HTTPS已动态启用，端口: 443");
+            log.info("HTTPS证书已更新: port={}, hosts={}", httpsPort, hostNames);
         } catch (Exception e) {
             log.error("启用HTTPS失败", e);
             throw new RuntimeException("无法启用HTTPS", e);
         }
     }
     
-    private SSLContext createSSLContext(KeyStore keyStore, String keystorePassword) throws Exception {
-        // 创建密钥管理器
-        javax.net.ssl.KeyManagerFactory kmf = javax.net.ssl.KeyManagerFactory
-            .getInstance(javax.net.ssl.KeyManagerFactory.getDefaultAlgorithm());
-        kmf.init(keyStore, keystorePassword.toCharArray());
-        
-        // 创建信任管理器
-        javax.net.ssl.TrustManagerFactory tmf = javax.net.ssl.TrustManagerFactory
-            .getInstance(javax.net.ssl.TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(keyStore);
+    public boolean isHttpsActive() {
+        if (httpsConnector == null && applicationContext.getWebServer() != null) {
+            // 通过 server.ssl 启动的连接器在首次签发前就已存在
+            httpsConnector = findSecureConnector();
+        }
+        return httpsConnector != null;
+    }
+    
+    public int getHttpsPort() {
+        return httpsPort;
+    }
+    
+    private void installHostConfig(AbstractHttp11Protocol<?> protocol, String hostName, KeyMaterial material) {
+        if (installed.get(hostName) == material) {
+            return;
+        }
+        // 先为新配置创建SSL上下文再替换，握手过程中不会出现空窗
+        protocol.addSslHostConfig(createHostConfig(hostName, material), true);
+        installed.put(hostName, material);
+        log.debug("已安装SNI证书: {}", hostName);
+    }
+    
+    /**
+     * 首次安装证书时创建HTTPS连接器，第一个域名作为不带SNI的客户端的默认证书
+     */
+    private void startConnector(Collection<String> hostNames, KeyMaterial material) {
+        Connector connector = new Connector("HTTP/1.1");
+        connector.setScheme("https");
+        connector.setSecure(true);
+        connector.setPort(httpsPort);
         
-        // 创建并初始化SSL上下文
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
+        AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+        protocol.setSSLEnabled(true);
+        if (protocol instanceof AbstractHttp11JsseProtocol) {
+            ((AbstractHttp11JsseProtocol<?>) protocol).setSslImplementationName(MeteredJsseImplementation.class.getName());
+        }
+        for (String hostName : hostNames) {
+            String name = hostName.toLowerCase(Locale.ROOT);
+            protocol.addSslHostConfig(createHostConfig(name, material));
+            installed.put(name, material);
+        }
+        protocol.setDefaultSSLHostConfigName(hostNames.iterator().next().toLowerCase(Locale.ROOT));
         
-        return sslContext;
+        // 服务已启动时 addConnector 会立即启动该连接器
+        tomcatService().addConnector(connector);
+        httpsConnector = connector;
+        log.info("HTTPS已动态启用，端口: {}", httpsPort);
+    }
+    
+    /**
+     * 复用通过 server.ssl 配置的已有安全连接器
+     */
+    private Connector findSecureConnector() {
+        for (Connector connector : tomcatService().findConnectors()) {
+            if (connector.getSecure() && connector.getPort() == httpsPort) {
+                return connector;
+            }
+        }
+        return null;
+    }
+    
+    private org.apache.catalina.Service tomcatService() {
+        TomcatWebServer tomcatWebServer = (TomcatWebServer) applicationContext.getWebServer();
+        return tomcatWebServer.getTomcat().getService();
+    }
+    
+    /**
+     * 直接使用注册表中已解析的 KeyStore，Tomcat 不再从磁盘读取密钥库
+     */
+    private static SSLHostConfig createHostConfig(String hostName, KeyMaterial material) {
+        SSLHostConfig sslHostConfig = new SSLHostConfig();
+        sslHostConfig.setHostName(hostName);
+        SSLHostConfigCertificate certificate =
+            new SSLHostConfigCertificate(sslHostConfig, SSLHostConfigCertificate.Type.UNDEFINED);
+        certificate.setCertificateKeystore(material.keyStore);
+        certificate.setCertificateKeystorePassword(material.password);
+        sslHostConfig.addCertificate(certificate);
+        return sslHostConfig;
     }
-} 
\ No newline at end of file
+}
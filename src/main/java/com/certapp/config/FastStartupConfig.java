@@ -0,0 +1,43 @@
+package com.certapp.config;
+
+import com.certapp.service.AcmeAccountContext;
+import com.certapp.service.InternalCaService;
+import com.certapp.service.LetsEncryptService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+
+/**
+ * 快速启动（fast-startup profile）用到的配置
+ */
+@Configuration
+public class FastStartupConfig {
+    private static final List<Class<?>> LAZY_TYPES =
+        List.of(AcmeAccountContext.class, LetsEncryptService.class, InternalCaService.class);
+    
+    /**
+     * 开启 spring.main.lazy-initialization 时只延迟 ACME 账户和内部CA相关的 Bean，
+     * 其余的（控制器、建表的组件、密钥池预填充等）仍在启动时创建，配置错误在启动时就暴露。
+     * 依赖它们的 Bean 在注入点加了 @Lazy，注入的是延迟代理
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter acmeAndCryptoOnlyLazyFilter() {
+        return (beanName, beanDefinition, beanType) ->
+            beanType == null || LAZY_TYPES.stream().noneMatch(type -> type.isAssignableFrom(beanType));
+    }
+    
+    /**
+     * JPA 延迟引导时 EntityManagerFactory 在这个线程池中构建。
+     * 应用自己定义了 ExecutorService，Spring Boot 就不再创建默认的 applicationTaskExecutor，这里补上
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.data.jpa.repositories.bootstrap-mode", havingValue = "deferred")
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.threadNamePrefix("jpa-bootstrap-").build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.certapp.config;
+
+import com.certapp.service.ChallengeStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 明文端口的快速通道，排在 Spring MVC 之前：
+ * 1. /.well-known/acme-challenge/* 直接从验证响应存储应答，不会被重定向
+ * 2. 其余请求在HTTPS可用后直接返回 301/308，Location 前缀按主机名缓存
+ */
+public class HttpFastPathFilter extends OncePerRequestFilter {
+    static final String CHALLENGE_PREFIX = "/.well-known/acme-challenge/";
+    private static final int MAX_CACHED_HOSTS = 4096;
+
+    private final ChallengeStore challengeStore;
+    private final BooleanSupplier httpsActive;
+    private final Set<Integer> redirectPorts;
+    private final Set<String> excludedHosts;
+    private final int httpsPort;
+    private final int redirectStatus;
+    private final Map<String, String> locationPrefixes = new ConcurrentHashMap<>();
+
+    public HttpFastPathFilter(ChallengeStore challengeStore, BooleanSupplier httpsActive, Set<Integer> redirectPorts,
+                              Set<String> excludedHosts, int httpsPort, int redirectStatus) {
+        this.challengeStore = challengeStore;
+        this.httpsActive = httpsActive;
+        this.redirectPorts = redirectPorts;
+        this.excludedHosts = excludedHosts;
+        this.httpsPort = httpsPort;
+        this.redirectStatus = redirectStatus;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        if (uri.startsWith(CHALLENGE_PREFIX)) {
+            serveChallenge(uri.substring(CHALLENGE_PREFIX.length()), response);
+            return;
+        }
+        if (request.isSecure() || !redirectPorts.contains(request.getLocalPort())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // 排除列表已转为小写，主机名不区分大小写
+        String host = request.getServerName().toLowerCase(Locale.ROOT);
+        if (excludedHosts.contains(host) || !httpsActive.getAsBoolean()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        redirect(request, response, host, uri);
+    }
+
+    private void serveChallenge(String token, HttpServletResponse response) throws IOException {
+        byte[] body = challengeStore.get(token);
+        if (body == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentLength(0);
+            return;
+        }
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private void redirect(HttpServletRequest request, HttpServletResponse response, String host, String uri) {
+        String prefix = locationPrefixes.get(host);
+        if (prefix == null) {
+            prefix = "https://" + host + (httpsPort == 443 ? "" : ":" + httpsPort);
+            // 主机名来自请求头，限制缓存数量，避免被随意伪造的 Host 撑满
+            if (locationPrefixes.size() < MAX_CACHED_HOSTS) {
+                locationPrefixes.put(host, prefix);
+            }
+        }
+        String query = request.getQueryString();
+        int length = prefix.length() + uri.length() + (query == null ? 0 : query.length() + 1);
+        StringBuilder location = new StringBuilder(length).append(prefix).append(uri);
+        if (query != null) {
+            location.append('?').append(query);
+        }
+        // 非 GET/HEAD 请求用 308，保证客户端按原方法和请求体重发
+        String method = request.getMethod();
+        boolean safe = "GET".equals(method) || "HEAD".equals(method);
+        response.setStatus(safe ? redirectStatus : 308);
+        response.setHeader(HttpHeaders.LOCATION, location.toString());
+        response.setContentLength(0);
+    }
+}
@@ -1,38 +1,50 @@
 package com.certapp.config;
 
+import com.certapp.service.ChallengeStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
-public class HttpRedirectConfig implements WebMvcConfigurer {
+public class HttpRedirectConfig {
     
-    @Bean
-    public HttpsRedirectInterceptor httpsRedirectInterceptor() {
-        return new HttpsRedirectInterceptor();
-    }
+    @Value("${certapp.redirect.ports:80}")
+    private Integer[] redirectPorts;
     
-    @Override
-    public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(httpsRedirectInterceptor());
-    }
+    @Value("${certapp.redirect.exclude-hosts:localhost}")
+    private String[] excludedHosts;
     
-    private static class HttpsRedirectInterceptor extends HandlerInterceptorAdapter {
-        @Override
-        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-            if (!request.isSecure() && !"localhost".equals(request.getServerName())) {
-                String httpsUrl = "https://" + request.getServerName() + 
-                    (request.getServerPort() != 80 ? ":" + request.getServerPort() : "") +
-                    request.getRequestURI();
-                response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
-                response.setHeader("Location", httpsUrl);
-                return false;
-            }
-            return true;
+    @Value("${certapp.redirect.status:301}")
+    private int redirectStatus;
+    
+    @Value("${certapp.https.port:443}")
+    private int httpsPort;
+    
+    /**
+     * 以最高优先级注册，验证请求和重定向都不进入 DispatcherServlet
+     */
+    @Bean
+    public FilterRegistrationBean<HttpFastPathFilter> httpFastPathFilter(ChallengeStore challengeStore,
+                                                                         DynamicSSLConfig dynamicSSLConfig) {
+        if (redirectStatus != 301 && redirectStatus != 308) {
+            throw new IllegalArgumentException("certapp.redirect.status 只能是 301 或 308: " + redirectStatus);
         }
+        Set<String> hosts = Arrays.stream(excludedHosts)
+            .map(host -> host.trim().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+        HttpFastPathFilter filter = new HttpFastPathFilter(challengeStore, dynamicSSLConfig::isHttpsActive,
+            Set.of(redirectPorts), hosts, httpsPort, redirectStatus);
+        
+        FilterRegistrationBean<HttpFastPathFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.certapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class IssuanceConfig {
+
+    @Value("${certapp.issuance.workers:4}")
+    private int workers;
+
+    @Value("${certapp.issuance.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${certapp.acme.poller-threads:2}")
+    private int pollerThreads;
+
+    @Value("${certapp.issuance.completion-threads:2}")
+    private int completionThreads;
+
+    @Bean
+    public ExecutorService issuanceExecutor() {
+        // 有界线程池 + 有界队列，队列满时直接拒绝，避免请求无限堆积
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            namedThreadFactory("issuance-"),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 订单验证通过后的提交CSR、下载证书、写制品、重载HTTPS和写库都在这里执行，轮询线程只负责轮询。
+     * 任务数受进行中的订单数限制，队列不设上限，避免CA已签发的证书因为队列满而丢失
+     */
+    @Bean
+    public ExecutorService issuanceCompletionExecutor() {
+        return Executors.newFixedThreadPool(completionThreads, namedThreadFactory("issuance-complete-"));
+    }
+
+    @Bean
+    public ScheduledExecutorService acmePollerScheduler() {
+        // 所有进行中的订单共用的轮询线程，线程数与并发订单数无关
+        ScheduledThreadPoolExecutor scheduler =
+            new ScheduledThreadPoolExecutor(pollerThreads, namedThreadFactory("acme-poller-"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
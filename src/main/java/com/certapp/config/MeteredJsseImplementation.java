@@ -0,0 +1,106 @@
+package com.certapp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.tomcat.util.net.SSLHostConfigCertificate;
+import org.apache.tomcat.util.net.SSLUtil;
+import org.apache.tomcat.util.net.jsse.JSSEImplementation;
+import org.apache.tomcat.util.net.jsse.JSSEUtil;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * 统计TLS握手次数的 JSSE 实现
+ * Tomcat 按类名实例化 SSLImplementation，无法注入，因此计数器注册在 Micrometer 的全局注册表上
+ * （Spring Boot 默认把自动配置的注册表加入全局注册表）。
+ * 每个 SSLHostConfig 的密钥管理器被包装一层，服务端选择证书时按该配置的域名计数：
+ * 只有完整握手会选择证书，会话复用不计入；标签取自已配置的域名而不是客户端发送的SNI，标签数量有上限。
+ */
+public class MeteredJsseImplementation extends JSSEImplementation {
+
+    @Override
+    public SSLUtil getSSLUtil(SSLHostConfigCertificate certificate) {
+        String hostName = certificate.getSSLHostConfig().getHostName();
+        return new JSSEUtil(certificate) {
+            @Override
+            public KeyManager[] getKeyManagers() throws Exception {
+                KeyManager[] keyManagers = super.getKeyManagers();
+                if (keyManagers == null) {
+                    return null;
+                }
+                Counter handshakes = Metrics.counter("certapp.tls.handshakes", "host", hostName);
+                for (int i = 0; i < keyManagers.length; i++) {
+                    if (keyManagers[i] instanceof X509ExtendedKeyManager) {
+                        keyManagers[i] = new CountingKeyManager((X509ExtendedKeyManager) keyManagers[i], handshakes);
+                    }
+                }
+                return keyManagers;
+            }
+        };
+    }
+
+    static class CountingKeyManager extends X509ExtendedKeyManager {
+        private final X509ExtendedKeyManager delegate;
+        private final Counter handshakes;
+
+        CountingKeyManager(X509ExtendedKeyManager delegate, Counter handshakes) {
+            this.delegate = delegate;
+            this.handshakes = handshakes;
+        }
+
+        @Override
+        public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+            String alias = delegate.chooseEngineServerAlias(keyType, issuers, engine);
+            // 客户端同时支持多种密钥类型时会按类型逐个询问，只在选中证书时计数
+            if (alias != null) {
+                handshakes.increment();
+            }
+            return alias;
+        }
+
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+            String alias = delegate.chooseServerAlias(keyType, issuers, socket);
+            if (alias != null) {
+                handshakes.increment();
+            }
+            return alias;
+        }
+
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+            return delegate.chooseEngineClientAlias(keyType, issuers, engine);
+        }
+
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+            return delegate.chooseClientAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers) {
+            return delegate.getClientAliases(keyType, issuers);
+        }
+
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers) {
+            return delegate.getServerAliases(keyType, issuers);
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            return delegate.getCertificateChain(alias);
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            return delegate.getPrivateKey(alias);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.certapp.config;
+
+import com.certapp.service.AcmePoller;
+import com.certapp.service.CertificateEventBus;
+import com.certapp.service.IssuanceAdmission;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.coyote.http11.AbstractHttp11JsseProtocol;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 线程池和ACME轮询器的指标，以及启动时已配置的HTTPS连接器的握手计数
+ * 签发各阶段的耗时见 IssuanceMetrics。
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * fileIOExecutor、issuanceExecutor 与 issuanceCompletionExecutor 的队列长度、活跃线程数等（executor.queued 等，按 name 区分）
+     */
+    @Bean
+    public MeterBinder executorMetrics(ExecutorService fileIOExecutor, ExecutorService issuanceExecutor,
+                                       ExecutorService issuanceCompletionExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(fileIOExecutor, "fileIO", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(issuanceExecutor, "issuance", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(issuanceCompletionExecutor, "issuanceCompletion", Tags.empty()).bindTo(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder acmePollerMetrics(AcmePoller acmePoller, IssuanceAdmission issuanceAdmission,
+                                         CertificateEventBus certificateEventBus) {
+        return registry -> {
+            Gauge.builder("certapp.acme.pending", acmePoller, AcmePoller::getPendingCount)
+                .description("正在轮询的挑战和订单数")
+                .register(registry);
+            Gauge.builder("certapp.admission.queued", issuanceAdmission, IssuanceAdmission::getQueuedCount)
+                .description("等待准入的签发任务数")
+                .register(registry);
+            Gauge.builder("certapp.events.subscribers", certificateEventBus, CertificateEventBus::getSubscriberCount)
+                .description("状态推送的SSE订阅数")
+                .register(registry);
+        };
+    }
+
+    /**
+     * 通过 server.ssl 启用的连接器同样统计握手；运行时创建的连接器由 DynamicSSLConfig 设置
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> handshakeMetricsCustomizer() {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            if (connector.getProtocolHandler() instanceof AbstractHttp11JsseProtocol) {
+                ((AbstractHttp11JsseProtocol<?>) connector.getProtocolHandler())
+                    .setSslImplementationName(MeteredJsseImplementation.class.getName());
+            }
+        });
+    }
+}
@@ -1,6 +1,8 @@
 package com.certapp.config;
 
+import com.certapp.service.KeyMaterialRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationListener;
@@ -9,35 +11,46 @@ import org.springframework.stereotype.Component;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
-import java.io.FileInputStream;
+import java.nio.file.Path;
 import java.security.KeyStore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Component
 @ConditionalOnProperty(name = "server.ssl.enabled", havingValue = "true")
 public class SSLContextRefreshListener implements ApplicationListener<ContextRefreshedEvent> {
     
+    @Autowired
+    private KeyMaterialRegistry keyMaterialRegistry;
+    
     @Value("${server.ssl.key-store}")
     private String keystorePath;
     
     @Value("${server.ssl.key-store-password}")
     private String keystorePassword;
     
+    private final AtomicBoolean loaded = new AtomicBoolean();
+    
+    /**
+     * 只在第一次刷新时加载；子上下文（如独立端口的管理端点）刷新也会发布该事件，不再重复读取密钥库
+     */
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!loaded.compareAndSet(false, true)) {
+            return;
+        }
         try {
             refreshSSLContext();
-            log.info("SSL上下文已更新");
+            log.info("SSL上下文已加载");
         } catch (Exception e) {
+            loaded.set(false);
             log.error("更新SSL上下文失败", e);
         }
     }
     
     private void refreshSSLContext() throws Exception {
-        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-        try (FileInputStream fis = new FileInputStream(keystorePath)) {
-            keyStore.load(fis, keystorePassword.toCharArray());
-        }
+        // 由注册表解析并缓存，多次刷新不会重复读取磁盘
+        KeyStore keyStore = keyMaterialRegistry.keyStore(Path.of(keystorePath), keystorePassword);
         
         TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
         tmf.init(keyStore);
@@ -0,0 +1,43 @@
+package com.certapp.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * 生成 AppCDS 归档用的训练运行，由 Gradle 的 cdsArchive 任务启用：
+ * 启动完成后请求几个常用接口，把处理请求要用到的类也加载进来，然后退出，JVM 退出时写出归档
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "certapp.startup.training-run", havingValue = "true")
+public class StartupTrainingRun {
+    private static final List<String> PATHS = List.of("/", "/api/certificates?limit=1", "/actuator/health");
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        int port = ((WebServerApplicationContext) event.getApplicationContext()).getWebServer().getPort();
+        for (String path : PATHS) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+                try (InputStream in = connection.getInputStream()) {
+                    in.readAllBytes();
+                }
+                log.info("训练请求: {} -> {}", path, connection.getResponseCode());
+            } catch (IOException e) {
+                log.warn("训练请求失败: {}, {}", path, e.getMessage());
+            }
+        }
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,140 @@
+package com.certapp.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 静态资源的缓存头和条件请求，排在 Spring MVC 之前：
+ * 启动时从构建生成的 asset-manifest.json 建立内存索引（路径 -> ETag、是否带内容哈希、是否有预压缩文件），
+ * 带哈希的文件名长期缓存并标记 immutable，其余文件（HTML等）每次用 ETag 重新验证；
+ * If-None-Match 命中时直接返回 304，不读取资源。选择 .br/.gz 文件由资源处理器的 EncodedResourceResolver 完成。
+ * 从IDE直接运行时没有清单，按文件内容计算 ETag，所有文件都不长期缓存。
+ */
+@Slf4j
+public class StaticResourceFilter extends OncePerRequestFilter {
+    static final String MANIFEST_LOCATION = "classpath:/asset-manifest.json";
+    static final String STATIC_LOCATION = "classpath:/static/";
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    private final Map<String, Entry> index;
+
+    /**
+     * 一个静态文件；ETag 是弱校验值，同一内容的原始和压缩表示共用
+     */
+    static final class Entry {
+        final String etag;
+        final boolean immutable;
+        final boolean encoded;
+
+        Entry(String etag, boolean immutable, boolean encoded) {
+            this.etag = "W/\"" + etag + "\"";
+            this.immutable = immutable;
+            this.encoded = encoded;
+        }
+    }
+
+    StaticResourceFilter(Map<String, Entry> index) {
+        this.index = index;
+    }
+
+    /**
+     * 优先读取构建清单，没有时扫描 classpath:/static/ 计算 ETag
+     */
+    public static StaticResourceFilter load(ResourcePatternResolver resolver, ObjectMapper objectMapper)
+            throws IOException {
+        Map<String, Entry> index = new HashMap<>();
+        Resource manifest = resolver.getResource(MANIFEST_LOCATION);
+        if (manifest.exists()) {
+            JsonNode files;
+            try (InputStream in = manifest.getInputStream()) {
+                files = objectMapper.readTree(in).path("files");
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> it = files.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> file = it.next();
+                JsonNode value = file.getValue();
+                index.put(file.getKey(), new Entry(value.path("etag").asText(), value.path("immutable").asBoolean(),
+                    value.path("encodings").size() > 0));
+            }
+            log.info("已加载静态资源清单: {}个文件", index.size());
+        } else {
+            String root = resolver.getResource(STATIC_LOCATION).getURL().toString();
+            for (Resource resource : resolver.getResources(STATIC_LOCATION + "**")) {
+                String url = resource.getURL().toString();
+                if (!resource.isReadable() || !url.startsWith(root)) {
+                    continue;
+                }
+                try (InputStream in = resource.getInputStream()) {
+                    index.put("/" + url.substring(root.length()), new Entry(DigestUtils.md5DigestAsHex(in), false, false));
+                }
+            }
+            log.info("未找到静态资源清单，按内容计算ETag: {}个文件", index.size());
+        }
+        // 首页由欢迎页映射转发到 index.html
+        Entry welcome = index.get("/index.html");
+        if (welcome != null) {
+            index.put("/", welcome);
+        }
+        return new StaticResourceFilter(index);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !"GET".equals(method) && !"HEAD".equals(method);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Entry entry = index.get(request.getRequestURI());
+        if (entry == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, entry.etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, entry.immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        if (entry.encoded) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * If-None-Match 使用弱比较：忽略 W/ 前缀，列表中任意一个相同即命中
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(opaque)
+                || (candidate.startsWith("W/") && candidate.substring(2).equals(opaque))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,14 +1,40 @@
 package com.certapp.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import java.io.IOException;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+    /**
+     * 客户端接受时返回构建生成的 .br/.gz 文件，解析结果按编码缓存
+     */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/**")
-                .addResourceLocations("classpath:/static/");
+                .addResourceLocations(StaticResourceFilter.STATIC_LOCATION)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+    
+    /**
+     * 排在明文端口的重定向之后，304 不进入 DispatcherServlet
+     */
+    @Bean
+    public FilterRegistrationBean<StaticResourceFilter> staticResourceFilter(ResourcePatternResolver resourcePatternResolver,
+                                                                             ObjectMapper objectMapper) throws IOException {
+        FilterRegistrationBean<StaticResourceFilter> registration =
+            new FilterRegistrationBean<>(StaticResourceFilter.load(resourcePatternResolver, objectMapper));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
     }
-} 
\ No newline at end of file
+}
@@ -1,35 +1,111 @@
 package com.certapp.controller;
 
 import com.certapp.model.Certificate;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateFilter;
+import com.certapp.model.SanApplyRequest;
+import com.certapp.model.SanApplyResult;
+import com.certapp.service.ArtifactStore;
+import com.certapp.service.CertificateEventBus;
 import com.certapp.service.CertificateService;
 import com.certapp.service.FileService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/certificates")
 @RequiredArgsConstructor
 public class CertificateController {
+    private static final String ESTIMATED_WAIT_HEADER = "X-Estimated-Wait-Seconds";
+    
     private final CertificateService certificateService;
+    private final CertificateEventBus certificateEventBus;
     private final FileService fileService;
+    private final ArtifactStore artifactStore;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${certapp.files.dir:path/to/files}")
+    private String filesDir;
     
+    /**
+     * 游标分页：响应头 X-Next-After 给出下一页的 after 参数，返回空列表表示已到末尾
+     */
     @GetMapping
-    public ResponseEntity<List<Certificate>> getList() {
-        log.debug("获取证书列表");
-        return ResponseEntity.ok(certificateService.getList());
+    public ResponseEntity<List<Certificate>> getList(CertificateFilter filter,
+                                                     @RequestParam(required = false) Long after,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        log.debug("获取证书列表: filter={}, after={}, limit={}", filter, after, limit);
+        List<Certificate> page = certificateService.getPage(filter, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!page.isEmpty()) {
+            response.header("X-Next-After", String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+    
+    /**
+     * 以 NDJSON 流式导出全部匹配的证书，每行一条记录
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> export(CertificateFilter filter) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                certificateService.export(filter, page -> {
+                    for (Certificate certificate : page) {
+                        generator.writeObject(certificate);
+                    }
+                    generator.flush();
+                });
+                generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+    
+    /**
+     * 以 Server-Sent Events 推送状态变更（事件名 status，数据为 CertificateStatusEvent）。
+     * 指定 id 时只推送这张证书；收到 resync 事件说明中间有事件被丢弃，客户端应重新拉取列表
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@RequestParam(required = false) Long id,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        try {
+            return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // 禁止反向代理缓冲事件流
+                .header("X-Accel-Buffering", "no")
+                .body(certificateEventBus.subscribe(id, lastEventId));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
     }
     
     @GetMapping("/{id}")
@@ -43,15 +119,15 @@ public class CertificateController {
     }
     
     @GetMapping("/file/{filename}")
-    public ResponseEntity<byte[]> getFile(@PathVariable String filename) {
+    public ResponseEntity<Resource> getFile(@PathVariable String filename,
+                                            HttpServletRequest request, HttpServletResponse response) {
         try {
-            Future<byte[]> future = fileService.readFileAsync("path/to/files/" + filename);
-            byte[] content = future.get(5, TimeUnit.SECONDS); // 设置超时时间
-            
-            return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(content);
+            Path file = fileService.resolve(Path.of(filesDir), filename);
+            return fileService.download(file, filename, MediaType.APPLICATION_OCTET_STREAM, request, response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
+            log.error("读取文件失败: {}", filename, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -61,8 +137,20 @@ public class CertificateController {
         log.info("收到证书申请请求: domain={}, type={}", request.getName(), request.getType());
         try {
             Certificate result = certificateService.oneClickApply(request);
-            log.info("证书申请成功: id={}", result.getId());
-            return ResponseEntity.ok(result);
+            // 命中最近签发的证书时直接返回 200，其余情况任务仍在进行中
+            HttpStatus status = CertificateStatus.ISSUED.name().equals(result.getStatus())
+                ? HttpStatus.OK : HttpStatus.ACCEPTED;
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .location(URI.create("/api/certificates/" + result.getId()));
+            if (result.getEstimatedWaitSeconds() != null) {
+                // 准入控制估算的排队时间
+                response.header(ESTIMATED_WAIT_HEADER, String.valueOf(result.getEstimatedWaitSeconds()));
+            }
+            return response.body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("证书申请失败", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -70,27 +158,73 @@ public class CertificateController {
         }
     }
     
+    /**
+     * 全部分组入队时返回 202 和证书列表；全部被拒绝时返回 503；
+     * 部分入队时返回 207，逐组给出结果（SanApplyResult），调用方只需重试被拒绝的分组
+     */
+    @PostMapping("/one-click/batch")
+    public ResponseEntity<?> oneClickApplyBatch(@RequestBody SanApplyRequest request) {
+        log.info("收到多域名证书申请请求: {}个域名", request.getDomains() == null ? 0 : request.getDomains().size());
+        try {
+            List<SanApplyResult> results = certificateService.oneClickApply(request);
+            long accepted = results.stream().filter(SanApplyResult::isAccepted).count();
+            if (accepted == results.size()) {
+                return ResponseEntity.accepted().body(results.stream()
+                    .map(SanApplyResult::getCertificate).collect(Collectors.toList()));
+            }
+            if (accepted == 0) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(results);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("多域名证书申请失败", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * 下载证书制品，format 可选 pem、fullchain、der、p12。
+     * 制品按指纹保存且内容不可变，ETag 取指纹加格式。
+     * p12 含私钥，只有开启 certapp.artifacts.p12-download-enabled 时才提供。
+     */
     @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadCertificate(@PathVariable Long id) {
+    public ResponseEntity<byte[]> downloadCertificate(@PathVariable Long id,
+                                                      @RequestParam(defaultValue = "pem") String format,
+                                                      WebRequest webRequest) {
+        ArtifactStore.Format artifactFormat;
+        try {
+            artifactFormat = ArtifactStore.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (artifactFormat == ArtifactStore.Format.P12 && !artifactStore.isP12DownloadEnabled()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         try {
             Certificate cert = certificateService.getById(id);
-            String fileName = cert.getDescription()
-                .lines()
-                .filter(line -> line.startsWith("Certificate file:"))
-                .findFirst()
-                .map(line -> line.substring("Certificate file:".length()).trim())
-                .orElseThrow();
-
-            Path certPath = Path.of("certificates", fileName);
-            Resource resource = new FileSystemResource(certPath.toFile());
-
+            if (cert.getFingerprint() == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = "\"" + cert.getFingerprint() + "-" + artifactFormat.name().toLowerCase(Locale.ROOT) + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            byte[] content = artifactStore.read(cert.getFingerprint(), artifactFormat);
+            if (content == null) {
+                return ResponseEntity.notFound().build();
+            }
             return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                    "attachment; filename=\"" + fileName + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(cert.getName() + artifactFormat.downloadSuffix).build().toString())
+                .contentType(MediaType.parseMediaType(artifactFormat.contentType))
+                .body(content);
         } catch (Exception e) {
+            log.error("下载证书失败: id={}", id, e);
             return ResponseEntity.notFound().build();
         }
     }
-} 
\ No newline at end of file
+}
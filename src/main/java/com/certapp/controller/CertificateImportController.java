@@ -0,0 +1,40 @@
+package com.certapp.controller;
+
+import com.certapp.model.CertificateImportJob;
+import com.certapp.model.CertificateImportRequest;
+import com.certapp.service.CertificateImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 证书文件导入接口
+ */
+@RestController
+@RequestMapping("/api/certificates/import")
+@RequiredArgsConstructor
+public class CertificateImportController {
+    private final CertificateImportService certificateImportService;
+    
+    /**
+     * 扫描目录并导入其中的证书，立即返回任务，进度通过 GET 查询
+     */
+    @PostMapping
+    public ResponseEntity<?> start(@RequestBody(required = false) CertificateImportRequest request) {
+        try {
+            CertificateImportJob job = certificateImportService.start(request == null ? null : request.getPath());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<CertificateImportJob> current() {
+        CertificateImportJob job = certificateImportService.getCurrentJob();
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+}
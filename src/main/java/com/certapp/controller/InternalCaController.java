@@ -0,0 +1,97 @@
+package com.certapp.controller;
+
+import com.certapp.model.BulkSignRequest;
+import com.certapp.model.BulkSignResult;
+import com.certapp.service.InternalCaService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内部CA接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/internal-ca")
+@RequiredArgsConstructor
+public class InternalCaController {
+    // 注入延迟代理：fast-startup 下内部CA在第一次请求时才加载
+    @Lazy
+    private final InternalCaService internalCaService;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${certapp.internal-ca.max-bulk-size:100000}")
+    private int maxBulkSize;
+    
+    @GetMapping(value = "/ca.crt", produces = "application/x-pem-file")
+    public String getCaCertificate() {
+        return InternalCaService.toPem(internalCaService.getCaCertificate());
+    }
+    
+    @PostMapping("/issue")
+    public ResponseEntity<BulkSignResult> issue(@RequestBody BulkSignRequest request) {
+        BulkSignResult result = internalCaService.signOne(request);
+        return result.getError() == null ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+    }
+    
+    /**
+     * 批量签发：请求体每行一个 JSON 对象（hostname/dnsNames 或 csr），也可以直接是主机名；
+     * 按输入顺序以 NDJSON 流式返回，每行一条结果
+     */
+    @PostMapping(value = "/bulk", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> bulk(HttpServletRequest request) throws IOException {
+        List<BulkSignRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = request.getReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (requests.size() >= maxBulkSize) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                requests.add(parseLine(line));
+            }
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("内部CA批量签发: {}条", requests.size());
+        
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                internalCaService.signAll(requests, generator::writeObject);
+                generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+    
+    private BulkSignRequest parseLine(String line) throws JsonProcessingException {
+        if (line.startsWith("{")) {
+            return objectMapper.readValue(line, BulkSignRequest.class);
+        }
+        BulkSignRequest request = new BulkSignRequest();
+        request.setHostname(line);
+        return request;
+    }
+}
@@ -0,0 +1,30 @@
+package com.certapp.controller;
+
+import com.certapp.service.ChallengeStore;
+import com.certapp.service.KeyPairPool;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行时统计：验证响应存储和密钥池
+ */
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+    private final ChallengeStore challengeStore;
+    private final KeyPairPool keyPairPool;
+
+    @GetMapping
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("challenges", challengeStore.stats());
+        stats.put("keyPairPool", keyPairPool.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,14 @@
+package com.certapp.model;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 内部CA批量签发的一条请求：给出 hostname（由服务生成密钥）或 PEM 格式的 csr
+ */
+@Data
+public class BulkSignRequest {
+    private String hostname;
+    private List<String> dnsNames;
+    private String csr;
+}
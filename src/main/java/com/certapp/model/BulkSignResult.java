@@ -0,0 +1,17 @@
+package com.certapp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * 内部CA批量签发的一条结果，失败时只有 error
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkSignResult {
+    private String hostname;
+    private String serialNumber;
+    private String certificate;
+    private String privateKey;
+    private String error;
+}
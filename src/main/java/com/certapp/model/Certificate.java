@@ -8,13 +8,21 @@ import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Column;
+import javax.persistence.Index;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
+import javax.persistence.Transient;
 
 
 @Data
 @Entity
-@Table(name = "certificates")
+@Table(name = "certificates", indexes = {
+    @Index(name = "idx_certificates_name", columnList = "name"),
+    @Index(name = "idx_certificates_not_after", columnList = "not_after"),
+    @Index(name = "idx_certificates_status_not_after", columnList = "status, not_after"),
+    @Index(name = "idx_certificates_fingerprint", columnList = "fingerprint"),
+    @Index(name = "idx_certificates_change_version", columnList = "change_version")
+})
 public class Certificate {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -31,15 +39,57 @@ public class Certificate {
     
     private String description;
     
+    /**
+     * 证书包含的全部域名（SAN），逗号分隔，第一个与 name 相同
+     */
+    @Column(length = 4000)
+    private String domains;
+    
     @Column(nullable = false)
     private String status = "PENDING";
     
+    /**
+     * 证书到期时间，续期调度按此字段建立索引查询
+     */
+    @Column(name = "not_after")
+    private LocalDateTime notAfter;
+    
+    /**
+     * 证书序列号（十六进制）
+     */
+    @Column(name = "serial_number")
+    private String serialNumber;
+    
+    /**
+     * 叶子证书DER编码的SHA-256指纹（十六进制），对应制品存储中的目录
+     */
+    @Column(length = 64)
+    private String fingerprint;
+    
+    /**
+     * 签发者DN（RFC 2253）
+     */
+    @Column(length = 1000)
+    private String issuer;
+    
+    /**
+     * 变更版本号：状态变更和签发成功时取全表最大值加一，其他节点按 change_version 增量同步状态和新签发的证书
+     */
+    @Column(name = "change_version")
+    private Long changeVersion;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    /**
+     * 新入队的申请预计还要排队多久（秒），只在申请接口的响应中返回，不保存
+     */
+    @Transient
+    private Long estimatedWaitSeconds;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
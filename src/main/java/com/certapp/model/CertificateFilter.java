@@ -0,0 +1,24 @@
+package com.certapp.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDateTime;
+
+/**
+ * 证书列表查询条件，为空的条件不参与过滤
+ */
+@Data
+public class CertificateFilter {
+    private String status;
+    
+    /**
+     * 域名前缀，按 name 字段的索引做范围查询
+     */
+    private String domain;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime expiresFrom;
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime expiresTo;
+}
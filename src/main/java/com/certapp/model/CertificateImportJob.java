@@ -0,0 +1,73 @@
+package com.certapp.model;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次证书文件导入任务的进度，扫描线程并发更新计数，查询接口直接序列化
+ */
+@Getter
+public class CertificateImportJob {
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    private static final int MAX_ERRORS = 100;
+
+    private final long id;
+    private final String root;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile String state = RUNNING;
+    /** 遍历到的证书文件数 */
+    private final AtomicLong filesScanned = new AtomicLong();
+    /** 大小、修改时间或内容哈希与上次扫描相同而跳过的文件数 */
+    private final AtomicLong filesUnchanged = new AtomicLong();
+    /** 重新解析的文件数 */
+    private final AtomicLong filesParsed = new AtomicLong();
+    /** 解析出的终端实体证书数（不含链中的CA证书，同一张证书出现在多个文件中时重复计数） */
+    private final AtomicLong certificatesFound = new AtomicLong();
+    private final AtomicLong certificatesInserted = new AtomicLong();
+    private final AtomicLong certificatesUpdated = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    @Getter(lombok.AccessLevel.NONE)
+    private final Deque<String> errors = new ArrayDeque<>();
+
+    public CertificateImportJob(long id, String root) {
+        this.id = id;
+        this.root = root;
+    }
+
+    /**
+     * 最近的错误，最多保留 100 条
+     */
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public void error(String message) {
+        errorCount.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() >= MAX_ERRORS) {
+                errors.pollFirst();
+            }
+            errors.addLast(message);
+        }
+    }
+
+    public boolean isRunning() {
+        return RUNNING.equals(state);
+    }
+
+    public void finish(String finalState) {
+        finishedAt = LocalDateTime.now();
+        state = finalState;
+    }
+}
@@ -0,0 +1,11 @@
+package com.certapp.model;
+
+import lombok.Data;
+
+/**
+ * 导入磁盘上已有证书文件的请求，path 为空时扫描配置的第一个导入目录
+ */
+@Data
+public class CertificateImportRequest {
+    private String path;
+}
@@ -0,0 +1,19 @@
+package com.certapp.model;
+
+/**
+ * 证书签发任务的状态机
+ * QUEUED -> AUTHORIZING -> FINALIZING -> ISSUED / FAILED
+ * IMPORTED 是从磁盘导入的已有证书，不经过签发流程，也不参与自动续期
+ */
+public enum CertificateStatus {
+    QUEUED,
+    AUTHORIZING,
+    FINALIZING,
+    ISSUED,
+    FAILED,
+    IMPORTED;
+
+    public boolean isTerminal() {
+        return this == ISSUED || this == FAILED;
+    }
+}
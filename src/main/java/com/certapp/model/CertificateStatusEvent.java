@@ -0,0 +1,15 @@
+package com.certapp.model;
+
+import lombok.Value;
+import java.time.LocalDateTime;
+
+/**
+ * 签发任务状态变更事件，在进程内发布
+ */
+@Value
+public class CertificateStatusEvent {
+    Long id;
+    CertificateStatus status;
+    String description;
+    LocalDateTime timestamp;
+}
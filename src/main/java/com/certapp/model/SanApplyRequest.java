@@ -0,0 +1,15 @@
+package com.certapp.model;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 多域名证书申请：域名会按每个订单允许的最大数量分组为若干个SAN订单
+ */
+@Data
+public class SanApplyRequest {
+    private List<String> domains;
+    private String type;
+    private String email;
+    private String description;
+}
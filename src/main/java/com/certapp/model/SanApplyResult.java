@@ -0,0 +1,18 @@
+package com.certapp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 多域名申请中一个分组（一个SAN订单）的结果：已入队时带证书记录，被拒绝时只有 error
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SanApplyResult {
+    private List<String> domains;
+    private boolean accepted;
+    private Certificate certificate;
+    private String error;
+}
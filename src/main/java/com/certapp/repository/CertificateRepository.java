@@ -2,7 +2,89 @@ package com.certapp.repository;
 
 import com.certapp.model.Certificate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface CertificateRepository extends JpaRepository<Certificate, Long> {
-    // 可以添加自定义查询方法
-} 
\ No newline at end of file
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface CertificateRepository extends JpaRepository<Certificate, Long>, CertificateRepositoryCustom {
+
+    /**
+     * 批量导入时按指纹判断证书是否已存在
+     */
+    List<Certificate> findByFingerprintIn(Collection<String> fingerprints);
+
+    /**
+     * 续期调度只需要ID和到期时间，走 (status, not_after) 索引
+     */
+    List<RenewalCandidate> findByStatusInAndNotAfterBefore(Collection<String> statuses, LocalDateTime before);
+
+    interface RenewalCandidate {
+        Long getId();
+
+        LocalDateTime getNotAfter();
+    }
+
+    /**
+     * 只更新状态字段，避免签发线程为一次状态变更先查询再保存整个实体；
+     * 同时分配新的变更版本号，其他节点据此把状态变更转发给本地的订阅者
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update certificates set status = :status, description = :description, updated_at = :updatedAt, " +
+           "change_version = (select coalesce(max(change_version), 0) + 1 from certificates) " +
+           "where id = :id", nativeQuery = true)
+    int updateStatus(@Param("id") Long id,
+                     @Param("status") String status,
+                     @Param("description") String description,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 签发成功后记录证书的到期时间、序列号、签发者和实际包含的域名，并分配新的变更版本号。
+     * 只有本节点仍持有该证书的租约（节点和防护令牌都一致）时才写入，返回 0 说明租约已被其他节点接管；
+     * 版本号取全表最大值加一，依赖 SQLite 的单写者保证不重复
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update certificates set not_after = :notAfter, serial_number = :serialNumber, " +
+           "fingerprint = :fingerprint, issuer = :issuer, domains = :domains, updated_at = :updatedAt, " +
+           "change_version = (select coalesce(max(change_version), 0) + 1 from certificates) " +
+           "where id = :id and exists (select 1 from issuance_leases l " +
+           "where l.certificate_id = :id and l.owner = :owner and l.token = :token)", nativeQuery = true)
+    int updateIssued(@Param("id") Long id,
+                     @Param("notAfter") LocalDateTime notAfter,
+                     @Param("serialNumber") String serialNumber,
+                     @Param("fingerprint") String fingerprint,
+                     @Param("issuer") String issuer,
+                     @Param("domains") String domains,
+                     @Param("updatedAt") LocalDateTime updatedAt,
+                     @Param("owner") String owner,
+                     @Param("token") long token);
+
+    /**
+     * 其他节点按变更版本号增量读取状态变更和新签发的证书，走 change_version 索引，不扫全表
+     */
+    List<CertificateChange> findTop100ByChangeVersionGreaterThanOrderByChangeVersionAsc(Long changeVersion);
+
+    interface CertificateChange {
+        Long getId();
+
+        String getName();
+
+        String getDomains();
+
+        String getFingerprint();
+
+        String getStatus();
+
+        String getDescription();
+
+        LocalDateTime getUpdatedAt();
+
+        Long getChangeVersion();
+    }
+}
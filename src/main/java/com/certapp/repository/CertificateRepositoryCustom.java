@@ -0,0 +1,14 @@
+package com.certapp.repository;
+
+import com.certapp.model.Certificate;
+import com.certapp.model.CertificateFilter;
+
+import java.util.List;
+
+public interface CertificateRepositoryCustom {
+
+    /**
+     * 基于主键的游标分页：返回 id 大于 afterId 的前 limit 条记录，按 id 升序
+     */
+    List<Certificate> findPage(CertificateFilter filter, Long afterId, int limit);
+}
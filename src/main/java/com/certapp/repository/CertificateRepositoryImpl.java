@@ -0,0 +1,54 @@
+package com.certapp.repository;
+
+import com.certapp.model.Certificate;
+import com.certapp.model.CertificateFilter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class CertificateRepositoryImpl implements CertificateRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Certificate> findPage(CertificateFilter filter, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Certificate> query = cb.createQuery(Certificate.class);
+        Root<Certificate> root = query.from(Certificate.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (afterId != null) {
+            predicates.add(cb.greaterThan(root.get("id"), afterId));
+        }
+        if (filter.getStatus() != null && !filter.getStatus().isBlank()) {
+            predicates.add(cb.equal(root.get("status"), filter.getStatus()));
+        }
+        if (filter.getDomain() != null && !filter.getDomain().isBlank()) {
+            // 用范围条件代替 LIKE，SQLite 才能使用 name 上的索引
+            String prefix = filter.getDomain().trim().toLowerCase(Locale.ROOT);
+            predicates.add(cb.greaterThanOrEqualTo(root.get("name"), prefix));
+            predicates.add(cb.lessThan(root.get("name"), prefix + Character.MAX_VALUE));
+        }
+        if (filter.getExpiresFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("notAfter"), filter.getExpiresFrom()));
+        }
+        if (filter.getExpiresTo() != null) {
+            predicates.add(cb.lessThan(root.get("notAfter"), filter.getExpiresTo()));
+        }
+
+        query.select(root)
+            .where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+}
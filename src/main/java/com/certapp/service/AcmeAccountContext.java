@@ -0,0 +1,153 @@
+package com.certapp.service;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shredzone.acme4j.AccountBuilder;
+import org.shredzone.acme4j.Login;
+import org.shredzone.acme4j.Session;
+import org.shredzone.acme4j.exception.AcmeException;
+import org.shredzone.acme4j.exception.AcmeServerException;
+import org.shredzone.acme4j.exception.AcmeUnauthorizedException;
+import org.shredzone.acme4j.util.KeyPairUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.security.KeyPair;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长期复用的ACME账户上下文
+ * 缓存解析后的用户密钥对、已绑定的账户URL以及一组 Session。
+ * 每个 Session 自己缓存目录信息并保留上一次响应的 Replay-Nonce，
+ * 因此这组 Session 同时也是一个 nonce 池：后续请求无需再次获取目录、注册账户或单独申请 nonce。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AcmeAccountContext {
+    private static final File USER_KEY_FILE = new File("user.key");
+    private static final String ACCOUNT_DOES_NOT_EXIST = "urn:ietf:params:acme:error:accountDoesNotExist";
+
+    private final IssuanceMetrics issuanceMetrics;
+
+    @Value("${certapp.acme.server-url:acme://letsencrypt.org}")
+    private String serverUrl;
+
+    @Value("${certapp.acme.session-pool-size:4}")
+    private int sessionPoolSize;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile KeyPair userKeyPair;
+    private volatile Login[] logins;
+
+    @FunctionalInterface
+    public interface AcmeCall<T> {
+        T call(Login login) throws AcmeException;
+    }
+
+    /**
+     * 使用缓存的登录信息执行ACME调用；账户失效时重新绑定账户并重试一次
+     */
+    public <T> T execute(AcmeCall<T> call) throws AcmeException {
+        try {
+            return call.call(login());
+        } catch (AcmeUnauthorizedException e) {
+            log.warn("ACME账户授权失效，重新绑定账户: {}", e.getMessage());
+        } catch (AcmeServerException e) {
+            if (!ACCOUNT_DOES_NOT_EXIST.equals(String.valueOf(e.getType()))) {
+                throw e;
+            }
+            log.warn("ACME账户不存在，重新注册账户");
+        }
+        invalidate();
+        return call.call(login());
+    }
+
+    /**
+     * 轮询取出一个已登录的 Session，首次调用时才真正连接CA
+     */
+    public Login login() throws AcmeException {
+        Login[] current = logins;
+        if (current == null) {
+            current = initialize();
+        }
+        return current[Math.floorMod(next.getAndIncrement(), current.length)];
+    }
+
+    /**
+     * 丢弃缓存的 Session 和账户URL，下一次调用时重新建立；用户密钥对保留
+     */
+    public synchronized void invalidate() {
+        logins = null;
+    }
+
+    private synchronized Login[] initialize() throws AcmeException {
+        if (logins != null) {
+            return logins;
+        }
+        Timer.Sample sample = issuanceMetrics.start();
+        try {
+            Login[] created = connect();
+            issuanceMetrics.record(IssuanceMetrics.ACCOUNT, sample, null);
+            return created;
+        } catch (AcmeException | RuntimeException e) {
+            issuanceMetrics.record(IssuanceMetrics.ACCOUNT, sample, e);
+            throw e;
+        }
+    }
+
+    private Login[] connect() throws AcmeException {
+        KeyPair keyPair = userKeyPair();
+
+        Login first = new AccountBuilder()
+            .agreeToTermsOfService()
+            .useKeyPair(keyPair)
+            .createLogin(new Session(serverUrl));
+        URL accountLocation = first.getAccountLocation();
+        log.info("ACME账户已绑定: server={}, account={}", serverUrl, accountLocation);
+
+        // 其余 Session 直接用账户URL登录，不会产生网络请求
+        Login[] created = new Login[Math.max(1, sessionPoolSize)];
+        created[0] = first;
+        for (int i = 1; i < created.length; i++) {
+            created[i] = new Session(serverUrl).login(accountLocation, keyPair);
+        }
+        logins = created;
+        return created;
+    }
+
+    private KeyPair userKeyPair() {
+        KeyPair keyPair = userKeyPair;
+        if (keyPair == null) {
+            keyPair = loadOrCreateUserKeyPair();
+            userKeyPair = keyPair;
+            log.debug("用户密钥对加载完成");
+        }
+        return keyPair;
+    }
+
+    private KeyPair loadOrCreateUserKeyPair() {
+        try {
+            if (USER_KEY_FILE.exists()) {
+                try (FileReader fr = new FileReader(USER_KEY_FILE)) {
+                    return KeyPairUtils.readKeyPair(fr);
+                }
+            } else {
+                KeyPair keyPair = KeyPairUtils.createKeyPair(2048);
+                try (FileWriter fw = new FileWriter(USER_KEY_FILE)) {
+                    KeyPairUtils.writeKeyPair(keyPair, fw);
+                }
+                return keyPair;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法加载用户密钥: " + USER_KEY_FILE, e);
+        }
+    }
+}
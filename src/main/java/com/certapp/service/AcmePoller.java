@@ -0,0 +1,153 @@
+package com.certapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shredzone.acme4j.AcmeJsonResource;
+import org.shredzone.acme4j.Problem;
+import org.shredzone.acme4j.Status;
+import org.shredzone.acme4j.exception.AcmeException;
+import org.shredzone.acme4j.exception.AcmeNetworkException;
+import org.shredzone.acme4j.exception.AcmeRetryAfterException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 共享的ACME状态轮询器
+ * 所有挑战和订单都挂在同一个调度器上等待，不再每个订单占用一个 sleep 线程。
+ * 轮询间隔优先遵循服务端的 Retry-After，否则按指数退避加随机抖动。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AcmePoller {
+    private final ScheduledExecutorService acmePollerScheduler;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Value("${certapp.acme.poll-initial-delay-ms:1000}")
+    private long initialDelayMs;
+
+    @Value("${certapp.acme.poll-max-delay-ms:30000}")
+    private long maxDelayMs;
+
+    @Value("${certapp.acme.poll-timeout-seconds:300}")
+    private long timeoutSeconds;
+
+    /**
+     * 等待资源进入 VALID 状态；进入 INVALID 或超时时以异常结束
+     *
+     * @param resource 需要轮询的挑战或订单
+     * @param status   读取资源当前状态
+     * @param error    读取资源失败原因
+     * @param name     日志中显示的资源描述
+     */
+    public CompletableFuture<Void> awaitValid(AcmeJsonResource resource, Supplier<Status> status,
+                                              Supplier<Problem> error, String name) {
+        PollTask task = new PollTask(resource, status, error, name,
+            Instant.now().plusSeconds(timeoutSeconds));
+        pending.incrementAndGet();
+        task.future.whenComplete((result, ex) -> pending.decrementAndGet());
+        schedule(task, initialDelayMs);
+        return task.future;
+    }
+
+    /**
+     * 当前正在等待的挑战和订单数量
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void schedule(PollTask task, long delayMs) {
+        acmePollerScheduler.schedule(() -> poll(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(PollTask task) {
+        long delayMs;
+        try {
+            task.resource.update();
+            delayMs = task.nextBackoff();
+        } catch (AcmeRetryAfterException e) {
+            // update() 在抛出前已刷新了资源状态，这里只需要采用服务端建议的间隔
+            delayMs = retryAfterDelay(e.getRetryAfter());
+        } catch (AcmeNetworkException e) {
+            log.debug("轮询{}时网络异常，稍后重试: {}", task.name, e.getMessage());
+            delayMs = task.nextBackoff();
+        } catch (AcmeException | RuntimeException e) {
+            task.future.completeExceptionally(e);
+            return;
+        }
+
+        Status current = task.status.get();
+        if (current == Status.VALID) {
+            log.debug("{}已验证通过", task.name);
+            task.future.complete(null);
+        } else if (current == Status.INVALID) {
+            Problem problem = task.error.get();
+            task.future.completeExceptionally(new InvalidResourceException(task.name + "验证失败"
+                + (problem != null ? ": " + problem : ""), problem));
+        } else if (Instant.now().isAfter(task.deadline)) {
+            task.future.completeExceptionally(new TimeoutException(task.name + "等待超时, status=" + current));
+        } else {
+            schedule(task, delayMs);
+        }
+    }
+
+    /**
+     * 资源进入 INVALID 状态，保留服务端给出的失败原因
+     */
+    public static class InvalidResourceException extends AcmeException {
+        private static final long serialVersionUID = 1L;
+        private final transient Problem problem;
+
+        InvalidResourceException(String message, Problem problem) {
+            super(message);
+            this.problem = problem;
+        }
+
+        public Problem getProblem() {
+            return problem;
+        }
+    }
+
+    private long retryAfterDelay(Instant retryAfter) {
+        long delayMs = Duration.between(Instant.now(), retryAfter).toMillis();
+        return Math.max(initialDelayMs, Math.min(delayMs, maxDelayMs));
+    }
+
+    private class PollTask {
+        final AcmeJsonResource resource;
+        final Supplier<Status> status;
+        final Supplier<Problem> error;
+        final String name;
+        final Instant deadline;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        int attempt;
+
+        PollTask(AcmeJsonResource resource, Supplier<Status> status, Supplier<Problem> error,
+                 String name, Instant deadline) {
+            this.resource = resource;
+            this.status = status;
+            this.error = error;
+            this.name = name;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 指数退避 + 抖动：在 [delay/2, delay] 之间随机取值
+         */
+        long nextBackoff() {
+            long delay = Math.min(maxDelayMs, initialDelayMs << Math.min(attempt++, 16));
+            return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.certapp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按证书指纹寻址的制品存储
+ * 每张证书签发时一次性生成 PEM、完整证书链 PEM、DER 和 PKCS12，保存在 <dir>/<sha256>/ 下，之后不再修改，
+ * 因此指纹加格式就是强 ETag。所有文件先写临时文件再原子重命名，读取方不会看到写了一半的密钥库。
+ * 证书的过期时间和域名以数据库记录为准，存储本身不维护索引，多个节点可以共用同一个目录。
+ */
+@Slf4j
+@Service
+public class ArtifactStore {
+    public static final String KEY_ALIAS = "tomcat";
+    private static final String DEFAULT_KEYSTORE_PASSWORD = "changeit";
+    private static final Base64.Encoder PEM_ENCODER =
+        Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII));
+
+    public enum Format {
+        PEM("cert.pem", "application/x-pem-file", ".crt"),
+        FULLCHAIN("fullchain.pem", "application/x-pem-file", ".fullchain.pem"),
+        DER("cert.der", "application/pkix-cert", ".der"),
+        P12("keystore.p12", "application/x-pkcs12", ".p12");
+
+        public final String fileName;
+        public final String contentType;
+        public final String downloadSuffix;
+
+        Format(String fileName, String contentType, String downloadSuffix) {
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.downloadSuffix = downloadSuffix;
+        }
+    }
+
+    @Value("${certapp.artifacts.dir:certificates/store}")
+    private String directory;
+
+    @Value("${certapp.artifacts.keystore-password:changeit}")
+    private String keystorePassword;
+
+    /**
+     * 下载接口没有鉴权，PKCS12 含私钥，默认不允许下载
+     */
+    @Value("${certapp.artifacts.p12-download-enabled:false}")
+    private boolean p12DownloadEnabled;
+
+    @Value("${certapp.artifacts.cache-size:1024}")
+    private int cacheSize;
+
+    private Path baseDir;
+    private Map<String, byte[]> cache;
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (p12DownloadEnabled && (keystorePassword == null || keystorePassword.isBlank()
+            || DEFAULT_KEYSTORE_PASSWORD.equals(keystorePassword))) {
+            throw new IllegalStateException("允许下载 PKCS12 时必须设置 certapp.artifacts.keystore-password，且不能使用默认密码");
+        }
+        baseDir = Path.of(directory).toAbsolutePath().normalize();
+        Files.createDirectories(baseDir);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        log.info("制品存储已加载: dir={}", baseDir);
+    }
+
+    /**
+     * 计算证书指纹：DER 编码的 SHA-256，十六进制小写
+     */
+    public static String fingerprint(X509Certificate certificate) {
+        try {
+            return sha256Hex(certificate.getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("无法计算证书指纹", e);
+        }
+    }
+
+    static String sha256Hex(byte[] content) throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 生成并保存全部格式，返回指纹。同一张证书重复保存时直接复用已有文件。
+     */
+    public String store(List<X509Certificate> chain, KeyPair keyPair, List<String> domains) {
+        X509Certificate leaf = chain.get(0);
+        String fingerprint = fingerprint(leaf);
+        Path dir = baseDir.resolve(fingerprint);
+        try {
+            if (!Files.exists(dir.resolve(Format.P12.fileName))) {
+                Files.createDirectories(dir);
+                writeAtomically(dir.resolve(Format.PEM.fileName), pem(List.of(leaf)));
+                writeAtomically(dir.resolve(Format.FULLCHAIN.fileName), pem(chain));
+                writeAtomically(dir.resolve(Format.DER.fileName), leaf.getEncoded());
+                // 密钥库最后写入，作为整组文件已完整的标记
+                writeAtomically(dir.resolve(Format.P12.fileName), pkcs12(chain, keyPair));
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException("保存证书制品失败: " + domains, e);
+        }
+        log.info("证书制品已保存: fingerprint={}, domains={}", fingerprint, domains);
+        return fingerprint;
+    }
+
+    /**
+     * 读取指定格式，内容不可变，命中缓存时不访问磁盘
+     */
+    public byte[] read(String fingerprint, Format format) throws IOException {
+        String key = fingerprint + "/" + format.fileName;
+        synchronized (cache) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path(fingerprint, format));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        synchronized (cache) {
+            cache.put(key, content);
+        }
+        return content;
+    }
+
+    public Path path(String fingerprint, Format format) {
+        Path file = baseDir.resolve(fingerprint).resolve(format.fileName).normalize();
+        if (!file.startsWith(baseDir)) {
+            throw new IllegalArgumentException("非法指纹: " + fingerprint);
+        }
+        return file;
+    }
+
+    public String getKeystorePassword() {
+        return keystorePassword;
+    }
+
+    public boolean isP12DownloadEnabled() {
+        return p12DownloadEnabled;
+    }
+
+    static byte[] pem(List<X509Certificate> certificates) throws CertificateEncodingException {
+        StringBuilder pem = new StringBuilder();
+        for (X509Certificate certificate : certificates) {
+            pem.append("-----BEGIN CERTIFICATE-----\n")
+                .append(PEM_ENCODER.encodeToString(certificate.getEncoded()))
+                .append("\n-----END CERTIFICATE-----\n");
+        }
+        return pem.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] pkcs12(List<X509Certificate> chain, KeyPair keyPair) throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(KEY_ALIAS, keyPair.getPrivate(), keystorePassword.toCharArray(),
+            chain.toArray(new X509Certificate[0]));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        keyStore.store(out, keystorePassword.toCharArray());
+        return out.toByteArray();
+    }
+
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.certapp.service;
+
+import com.certapp.config.DynamicSSLConfig;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateStatusEvent;
+import com.certapp.repository.CertificateRepository;
+import com.certapp.repository.CertificateRepository.CertificateChange;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点同步证书变更
+ * 按 change_version 增量读取状态变更和签发结果：
+ * 其他节点写入的状态变更转成本地的 CertificateStatusEvent，负载均衡后连到任一节点的 SSE 订阅都能收到进度和终态；
+ * 签发成功的证书把制品存储中的 PKCS12 安装到本节点的 HTTPS 连接器，每个节点都能用其他节点签发的证书应答。
+ * 各节点需要共用同一个制品目录（certapp.artifacts.dir）。
+ * 启动时从版本 0 开始，重启后所有已签发证书的 HTTPS 配置随之恢复；这一轮只安装证书，不补发历史状态事件。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CertificateChangeSync {
+    private static final int BATCH_SIZE = 100;
+    private static final int SEEN_MAX_SIZE = 10000;
+
+    private final CertificateRepository certificateRepository;
+    private final ArtifactStore artifactStore;
+    private final KeyMaterialRegistry keyMaterialRegistry;
+    private final DynamicSSLConfig dynamicSSLConfig;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${certapp.cluster.sync-interval-ms:2000}")
+    private long syncIntervalMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "certificate-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 本节点最近一次发布的各证书状态事件（包括转发的），按访问顺序淘汰
+     */
+    private final Map<Long, CertificateStatusEvent> seen = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CertificateStatusEvent> eldest) {
+            return size() > SEEN_MAX_SIZE;
+        }
+    };
+    private volatile long syncedVersion;
+    private boolean caughtUp;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public long getSyncedVersion() {
+        return syncedVersion;
+    }
+
+    @EventListener
+    public void onStatusChanged(CertificateStatusEvent event) {
+        synchronized (seen) {
+            seen.put(event.getId(), event);
+        }
+    }
+
+    /**
+     * 只在调度线程中调用；单张证书处理失败时记录日志并跳过，不阻塞后面的版本
+     */
+    private void sync() {
+        try {
+            List<CertificateChange> changes;
+            do {
+                changes = certificateRepository.findTop100ByChangeVersionGreaterThanOrderByChangeVersionAsc(syncedVersion);
+                for (CertificateChange change : changes) {
+                    if (caughtUp) {
+                        relay(change);
+                    }
+                    install(change);
+                    syncedVersion = change.getChangeVersion();
+                }
+            } while (changes.size() == BATCH_SIZE);
+            caughtUp = true;
+        } catch (RuntimeException e) {
+            log.error("同步证书变更失败", e);
+        }
+    }
+
+    /**
+     * 本节点自己写入的状态在写库之后才发布事件，记录的更新时间不晚于事件时间，这里跳过；
+     * 比本节点最近一次事件更新、且状态或描述有变化的才转发
+     */
+    private void relay(CertificateChange change) {
+        CertificateStatus status;
+        try {
+            status = CertificateStatus.valueOf(change.getStatus());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return;
+        }
+        CertificateStatusEvent last;
+        synchronized (seen) {
+            last = seen.get(change.getId());
+        }
+        if (last != null && (change.getUpdatedAt() == null || !change.getUpdatedAt().isAfter(last.getTimestamp())
+            || last.getStatus() == status && Objects.equals(last.getDescription(), change.getDescription()))) {
+            return;
+        }
+        eventPublisher.publishEvent(new CertificateStatusEvent(change.getId(), status, change.getDescription(),
+            change.getUpdatedAt()));
+    }
+
+    private void install(CertificateChange change) {
+        // 版本号和指纹在同一条语句中写入，ISSUED 状态随写后队列稍后落库，所以这里不看状态；
+        // 续期失败时记录上仍是原来那张有效的证书
+        if (change.getFingerprint() == null) {
+            return;
+        }
+        List<String> domains = change.getDomains() == null || change.getDomains().isBlank()
+            ? List.of(change.getName()) : Arrays.asList(change.getDomains().split(","));
+        Path keystore = artifactStore.path(change.getFingerprint(), ArtifactStore.Format.P12);
+        KeyMaterialRegistry.KeyMaterial current = keyMaterialRegistry.get(domains.get(0));
+        if (current != null && current.source.equals(keystore.toAbsolutePath().normalize())) {
+            // 本节点签发的，或者已经同步过
+            return;
+        }
+        if (!Files.exists(keystore)) {
+            log.warn("制品存储中没有该证书，跳过安装: id={}, fingerprint={}", change.getId(), change.getFingerprint());
+            return;
+        }
+        try {
+            KeyMaterialRegistry.KeyMaterial material =
+                keyMaterialRegistry.register(domains, keystore, artifactStore.getKeystorePassword());
+            dynamicSSLConfig.installCertificate(domains, material);
+            log.info("已安装同步的证书: id={}, domains={}, version={}",
+                change.getId(), domains, change.getChangeVersion());
+        } catch (RuntimeException e) {
+            log.error("安装同步的证书失败: id=" + change.getId() + ", domains=" + domains, e);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.certapp.service;
+
+import com.certapp.model.CertificateStatusEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 证书状态的进程内事件总线，向 SSE 订阅者推送 CertificateStatusEvent
+ * 订阅者可以只关注一张证书，也可以关注全部证书。发布时只把事件放进订阅者自己的有界缓冲区，
+ * 由少量发送线程写出；慢的订阅者缓冲区满时丢弃最旧的事件，并补发 resync 事件提示客户端重新拉取列表。
+ * 空闲的订阅者只占一个异步请求，不占线程，也不查询数据库；定期发送心跳注释以保持连接并发现断开的客户端。
+ * 最近的事件保存在环形缓冲区中，EventSource 断线重连时按 Last-Event-ID 补发。
+ */
+@Slf4j
+@Component
+public class CertificateEventBus {
+    static final String STATUS_EVENT = "status";
+    static final String RESYNC_EVENT = "resync";
+    private static final Object HEARTBEAT = new Object();
+
+    @Value("${certapp.events.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${certapp.events.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${certapp.events.history-size:1000}")
+    private int historySize;
+
+    @Value("${certapp.events.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${certapp.events.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${certapp.events.sender-threads:2}")
+    private int senderThreads;
+
+    private final Set<Subscriber> allSubscribers = new HashSet<>();
+    private final Map<Long, Set<Subscriber>> byCertificate = new HashMap<>();
+    private final Deque<Envelope> history = new ArrayDeque<>();
+    private long sequence;
+    private int subscriberCount;
+    private ExecutorService senders;
+    private ScheduledExecutorService heartbeats;
+
+    /**
+     * 已编号的事件，编号作为 SSE 的 id，用于断线重连
+     */
+    private static final class Envelope {
+        final long id;
+        final CertificateStatusEvent event;
+
+        Envelope(long id, CertificateStatusEvent event) {
+            this.id = id;
+            this.event = event;
+        }
+    }
+
+    /**
+     * 一个 SSE 连接；缓冲区和发送状态由自身的锁保护，同一时间最多只有一个发送线程在写
+     */
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Long certificateId;
+        final Deque<Object> buffer = new ArrayDeque<>();
+        boolean scheduled;
+        boolean overflowed;
+        boolean closed;
+        volatile long lastSentAt = System.nanoTime();
+
+        Subscriber(SseEmitter emitter, Long certificateId) {
+            this.emitter = emitter;
+            this.certificateId = certificateId;
+        }
+
+        void offer(Object item) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    buffer.pollFirst();
+                    overflowed = true;
+                }
+                buffer.addLast(item);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                senders.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 应用正在关闭
+            }
+        }
+
+        void resync() {
+            synchronized (this) {
+                buffer.clear();
+                overflowed = true;
+            }
+            offer(HEARTBEAT);
+        }
+
+        private void drain() {
+            while (true) {
+                Object item;
+                boolean resync;
+                synchronized (this) {
+                    resync = overflowed;
+                    overflowed = false;
+                    item = buffer.pollFirst();
+                    if (item == null && !resync) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    if (resync) {
+                        emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(""));
+                    }
+                    if (item instanceof Envelope) {
+                        Envelope envelope = (Envelope) item;
+                        emitter.send(SseEmitter.event().id(Long.toString(envelope.id)).name(STATUS_EVENT)
+                            .data(envelope.event, MediaType.APPLICATION_JSON));
+                    } else if (item == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    lastSentAt = System.nanoTime();
+                } catch (IOException | IllegalStateException e) {
+                    // 客户端已断开或连接已结束；写失败由容器的错误回调结束请求，这里不能再调用 completeWithError，
+                    // 否则两边同时结束同一个异步请求，Tomcat 的处理器可能被重复回收给两个新连接
+                    log.debug("SSE推送失败，取消订阅: certificateId={}, {}", certificateId, e.getMessage());
+                    unsubscribe(this);
+                    return;
+                }
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "certificate-events-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "certificate-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        List<Subscriber> subscribers;
+        synchronized (this) {
+            subscribers = snapshot();
+        }
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * 订阅状态变更
+     *
+     * @param certificateId 只关注这张证书，为 null 时关注全部证书
+     * @param lastEventId   EventSource 重连时带上的 Last-Event-ID，补发其后的事件；
+     *                      单张证书的首次订阅补发该证书最近的一条事件，避免错过提交和订阅之间的变化
+     * @throws RejectedExecutionException 订阅者已达上限
+     */
+    public SseEmitter subscribe(Long certificateId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(emitter, certificateId);
+        synchronized (this) {
+            if (subscriberCount >= maxSubscribers) {
+                throw new RejectedExecutionException("SSE订阅数已达上限: " + maxSubscribers);
+            }
+            if (certificateId == null) {
+                allSubscribers.add(subscriber);
+            } else {
+                byCertificate.computeIfAbsent(certificateId, id -> new HashSet<>()).add(subscriber);
+            }
+            subscriberCount++;
+            replay(subscriber, lastEventId);
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> {
+            unsubscribe(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> unsubscribe(subscriber));
+        // 先发一条心跳，让客户端和中间代理尽快收到响应头
+        subscriber.offer(HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * 签发流程和 CertificateService 发布的状态变更
+     */
+    @EventListener
+    public void onStatusChanged(CertificateStatusEvent event) {
+        synchronized (this) {
+            Envelope envelope = new Envelope(++sequence, event);
+            history.addLast(envelope);
+            if (history.size() > historySize) {
+                history.pollFirst();
+            }
+            allSubscribers.forEach(subscriber -> subscriber.offer(envelope));
+            Set<Subscriber> watchers = byCertificate.get(event.getId());
+            if (watchers != null) {
+                watchers.forEach(subscriber -> subscriber.offer(envelope));
+            }
+        }
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    private void replay(Subscriber subscriber, Long lastEventId) {
+        if (lastEventId == null) {
+            if (subscriber.certificateId != null) {
+                Envelope latest = null;
+                for (Envelope envelope : history) {
+                    if (subscriber.certificateId.equals(envelope.event.getId())) {
+                        latest = envelope;
+                    }
+                }
+                if (latest != null) {
+                    subscriber.offer(latest);
+                }
+            }
+            return;
+        }
+        Envelope oldest = history.peekFirst();
+        // 编号超过当前序号说明服务已重启；早于环形缓冲区的事件已经丢失
+        if (lastEventId > sequence || (oldest != null && oldest.id > lastEventId + 1)) {
+            subscriber.resync();
+            return;
+        }
+        for (Envelope envelope : history) {
+            if (envelope.id > lastEventId
+                && (subscriber.certificateId == null || subscriber.certificateId.equals(envelope.event.getId()))) {
+                subscriber.offer(envelope);
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+            subscriber.buffer.clear();
+        }
+        synchronized (this) {
+            if (subscriber.certificateId == null) {
+                allSubscribers.remove(subscriber);
+            } else {
+                Set<Subscriber> watchers = byCertificate.get(subscriber.certificateId);
+                if (watchers != null) {
+                    watchers.remove(subscriber);
+                    if (watchers.isEmpty()) {
+                        byCertificate.remove(subscriber.certificateId);
+                    }
+                }
+            }
+            subscriberCount--;
+        }
+    }
+
+    /**
+     * 只给一个心跳周期内没有发送过数据的订阅者发心跳
+     */
+    private void heartbeat() {
+        List<Subscriber> subscribers;
+        synchronized (this) {
+            subscribers = snapshot();
+        }
+        long now = System.nanoTime();
+        long interval = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+        for (Subscriber subscriber : subscribers) {
+            if (now - subscriber.lastSentAt >= interval) {
+                subscriber.offer(HEARTBEAT);
+            }
+        }
+    }
+
+    private List<Subscriber> snapshot() {
+        List<Subscriber> subscribers = new ArrayList<>(allSubscribers);
+        byCertificate.values().forEach(subscribers::addAll);
+        return subscribers;
+    }
+}
@@ -1,39 +1,54 @@
 package com.certapp.service;
 
 import lombok.RequiredArgsConstructor;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
 import org.springframework.stereotype.Service;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
 import java.security.cert.X509Certificate;
-import java.time.LocalDateTime;
-import javax.security.auth.x500.X500Principal;
-import org.bouncycastle.x509.X509V3CertificateGenerator;
-import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class CertificateGeneratorService {
+    private final KeyPairPool keyPairPool;
     
+    /**
+     * 生成自签名证书（DER 编码）；需要由统一CA签发时使用 InternalCaService
+     */
     public byte[] generateCertificate(String commonName, String organization) throws Exception {
-        // 生成密钥对
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(2048);
-        KeyPair keyPair = keyPairGenerator.generateKeyPair();
-
-        // 证书生成器
-        X509V3CertificateGenerator certGen = new X509V3CertificateGenerator();
-        X500Principal dnName = new X500Principal("CN=" + commonName + ", O=" + organization);
-
-        certGen.setSerialNumber(BigInteger.valueOf(System.currentTimeMillis()));
-        certGen.setSubjectDN(dnName);
-        certGen.setIssuerDN(dnName); // 自签名
-        certGen.setNotBefore(new Date(System.currentTimeMillis()));
-        certGen.setNotAfter(new Date(System.currentTimeMillis() + 365 * 24 * 60 * 60 * 1000L));
-        certGen.setPublicKey(keyPair.getPublic());
-        certGen.setSignatureAlgorithm("SHA256WithRSAEncryption");
-
-        X509Certificate cert = certGen.generate(keyPair.getPrivate());
+        // 从预生成池中取出密钥对
+        KeyPair keyPair = keyPairPool.take();
+        
+        X500Name dnName = new X500NameBuilder(BCStyle.INSTANCE)
+            .addRDN(BCStyle.CN, commonName)
+            .addRDN(BCStyle.O, organization)
+            .build();
+        Instant now = Instant.now();
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+            dnName,
+            InternalCaService.randomSerial(),
+            Date.from(now),
+            Date.from(now.plus(Duration.ofDays(365))),
+            dnName, // 自签名
+            keyPair.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+        builder.addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(KeyPurposeId.id_kp_serverAuth));
+        builder.addExtension(Extension.subjectAlternativeName, false,
+            InternalCaService.generalNames(List.of(commonName)));
+        
+        X509Certificate cert = InternalCaService.toCertificate(builder, keyPair.getPrivate(),
+            InternalCaService.signatureAlgorithm(keyPair.getPrivate()));
         return cert.getEncoded();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,596 @@
+package com.certapp.service;
+
+import com.certapp.model.Certificate;
+import com.certapp.model.CertificateImportJob;
+import com.certapp.model.CertificateStatus;
+import com.certapp.repository.CertificateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 导入磁盘上已有的证书文件（PEM/DER/PKCS12）
+ * 目录树由 ForkJoin 任务并行遍历，每个子目录和文件各是一个任务，解析在有界的线程池中进行；
+ * 超过阈值的大文件（如CA证书包）直接内存映射，PEM块在映射区上定位和解析，不复制到堆上。
+ * 解析结果经有界队列交给唯一的写线程，按批在一个事务中按指纹插入或补全证书记录（SQLite 只允许一个写事务）。
+ * 每个文件的大小、修改时间和内容哈希记在 certificate_import_files 表中：
+ * 大小和修改时间都没变的文件不再读取，变了但哈希相同的文件只更新记录，不再解析。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CertificateImportService {
+    private static final Set<String> CERTIFICATE_SUFFIXES = Set.of(".pem", ".crt", ".cer", ".cert", ".der");
+    private static final Set<String> PKCS12_SUFFIXES = Set.of(".p12", ".pfx");
+    private static final byte[] PEM_BEGIN = "-----BEGIN CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PEM_END = "-----END CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+    // SQLite 单条语句最多 999 个参数
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final CertificateRepository certificateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${certapp.import.roots:certificates/import}")
+    private List<String> roots;
+
+    @Value("${certapp.import.parallelism:4}")
+    private int parallelism;
+
+    @Value("${certapp.import.batch-size:200}")
+    private int batchSize;
+
+    @Value("${certapp.import.mmap-threshold-kb:256}")
+    private long mmapThresholdKb;
+
+    @Value("${certapp.import.max-file-size-mb:64}")
+    private long maxFileSizeMb;
+
+    @Value("${certapp.import.pkcs12-passwords:changeit}")
+    private List<String> pkcs12Passwords;
+
+    @Value("${certapp.import.email:import@localhost}")
+    private String importEmail;
+
+    private final AtomicLong jobIds = new AtomicLong();
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "certificate-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile CertificateImportJob currentJob;
+
+    /**
+     * 文件上次扫描时的状态
+     */
+    private static final class FileState {
+        final long size;
+        final long modifiedAt;
+        final String sha256;
+
+        FileState(long size, long modifiedAt, String sha256) {
+            this.size = size;
+            this.modifiedAt = modifiedAt;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * 一个重新读取过的文件；certificates 为 null 表示内容没变，只需要更新文件记录
+     */
+    private static final class ScannedFile {
+        final String path;
+        final FileState state;
+        final List<ImportedCertificate> certificates;
+
+        ScannedFile(String path, FileState state, List<ImportedCertificate> certificates) {
+            this.path = path;
+            this.state = state;
+            this.certificates = certificates;
+        }
+    }
+
+    private static final class ImportedCertificate {
+        final String fingerprint;
+        final List<String> domains;
+        final String issuer;
+        final LocalDateTime notAfter;
+        final String serialNumber;
+        final String source;
+
+        ImportedCertificate(X509Certificate certificate, String source) {
+            this.fingerprint = ArtifactStore.fingerprint(certificate);
+            this.domains = domainsOf(certificate);
+            this.issuer = certificate.getIssuerX500Principal().getName();
+            this.notAfter = LocalDateTime.ofInstant(certificate.getNotAfter().toInstant(), ZoneId.systemDefault());
+            this.serialNumber = certificate.getSerialNumber().toString(16);
+            this.source = source;
+        }
+    }
+
+    @PostConstruct
+    public void createTable() {
+        jdbcTemplate.execute("create table if not exists certificate_import_files ("
+            + "path varchar(4096) primary key, size bigint not null, modified_at bigint not null, "
+            + "sha256 varchar(64) not null, scanned_at bigint not null)");
+    }
+
+    @PreDestroy
+    public void stop() {
+        jobRunner.shutdownNow();
+    }
+
+    /**
+     * 开始导入，同一时间只运行一个任务
+     *
+     * @param path 要扫描的目录，必须位于 certapp.import.roots 配置的目录之下；为空时扫描第一个配置的目录
+     * @throws IllegalArgumentException 目录不允许导入或不存在
+     * @throws IllegalStateException    已有导入任务在运行
+     */
+    public synchronized CertificateImportJob start(String path) {
+        Path root = resolveRoot(path);
+        if (currentJob != null && currentJob.isRunning()) {
+            throw new IllegalStateException("已有导入任务在运行: id=" + currentJob.getId());
+        }
+        CertificateImportJob job = new CertificateImportJob(jobIds.incrementAndGet(), root.toString());
+        currentJob = job;
+        jobRunner.execute(() -> run(job, root));
+        log.info("开始导入证书文件: id={}, root={}", job.getId(), root);
+        return job;
+    }
+
+    /**
+     * 当前或最近一次导入任务，没有时返回 null
+     */
+    public CertificateImportJob getCurrentJob() {
+        return currentJob;
+    }
+
+    private Path resolveRoot(String path) {
+        List<Path> allowed = roots.stream()
+            .filter(root -> !root.isBlank())
+            .map(root -> Path.of(root.trim()).toAbsolutePath().normalize())
+            .collect(Collectors.toList());
+        if (allowed.isEmpty()) {
+            throw new IllegalArgumentException("未配置导入目录 certapp.import.roots");
+        }
+        Path root = path == null || path.isBlank() ? allowed.get(0) : Path.of(path.trim()).toAbsolutePath().normalize();
+        if (allowed.stream().noneMatch(root::startsWith)) {
+            throw new IllegalArgumentException("不允许导入该目录: " + root);
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("目录不存在: " + root);
+        }
+        return root;
+    }
+
+    private void run(CertificateImportJob job, Path root) {
+        long start = System.nanoTime();
+        Map<String, FileState> known = loadFileStates(root);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        int batchLimit = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        BlockingQueue<ScannedFile> results = new ArrayBlockingQueue<>(batchLimit * 2);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            ForkJoinTask<Void> walk = pool.submit(new DirectoryTask(root, job, known, seen, results));
+            List<ScannedFile> batch = new ArrayList<>(batchLimit);
+            long lastProgress = start;
+            while (true) {
+                ScannedFile scanned = results.poll(200, TimeUnit.MILLISECONDS);
+                if (scanned != null) {
+                    batch.add(scanned);
+                    if (batch.size() < batchLimit) {
+                        continue;
+                    }
+                } else if (walk.isDone() && results.isEmpty()) {
+                    break;
+                }
+                // 批次已满，或解析暂时没有新结果时先写入已有的部分，进度及时可见
+                if (!batch.isEmpty()) {
+                    write(batch, job);
+                    batch.clear();
+                }
+                if (System.nanoTime() - lastProgress > PROGRESS_LOG_INTERVAL_NANOS) {
+                    lastProgress = System.nanoTime();
+                    log.info("证书导入进度: id={}, 文件{}个, 未变化{}个, 新增证书{}个",
+                        job.getId(), job.getFilesScanned(), job.getFilesUnchanged(), job.getCertificatesInserted());
+                }
+            }
+            walk.join();
+            if (!batch.isEmpty()) {
+                write(batch, job);
+            }
+            forgetMissingFiles(known, seen);
+            job.finish(CertificateImportJob.COMPLETED);
+            log.info("证书导入完成: id={}, root={}, 文件{}个, 未变化{}个, 解析{}个, 新增证书{}个, 更新{}个, 错误{}个, 耗时{}ms",
+                job.getId(), root, job.getFilesScanned(), job.getFilesUnchanged(), job.getFilesParsed(),
+                job.getCertificatesInserted(), job.getCertificatesUpdated(), job.getErrorCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error("导入被中断");
+            job.finish(CertificateImportJob.FAILED);
+        } catch (RuntimeException e) {
+            log.error("证书导入失败: id=" + job.getId() + ", root=" + root, e);
+            job.error("导入失败: " + e.getMessage());
+            job.finish(CertificateImportJob.FAILED);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 遍历一个目录：子目录和文件各自作为子任务并行处理，不跟随符号链接
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+        private final CertificateImportJob job;
+        private final Map<String, FileState> known;
+        private final Set<String> seen;
+        private final BlockingQueue<ScannedFile> results;
+
+        DirectoryTask(Path dir, CertificateImportJob job, Map<String, FileState> known, Set<String> seen,
+                      BlockingQueue<ScannedFile> results) {
+            this.dir = dir;
+            this.job = job;
+            this.known = known;
+            this.seen = seen;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes =
+                        Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        tasks.add(new DirectoryTask(entry, job, known, seen, results));
+                    } else if (attributes.isRegularFile() && fileType(entry) != null) {
+                        tasks.add(new RecursiveAction() {
+                            @Override
+                            protected void compute() {
+                                scanFile(entry, attributes, job, known, seen, results);
+                            }
+                        });
+                    }
+                }
+            } catch (IOException e) {
+                job.error(dir + ": " + e.getMessage());
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private void scanFile(Path file, BasicFileAttributes attributes, CertificateImportJob job,
+                          Map<String, FileState> known, Set<String> seen, BlockingQueue<ScannedFile> results) {
+        String key = file.toString();
+        seen.add(key);
+        job.getFilesScanned().incrementAndGet();
+        long size = attributes.size();
+        long modifiedAt = attributes.lastModifiedTime().toMillis();
+        FileState previous = known.get(key);
+        if (previous != null && previous.size == size && previous.modifiedAt == modifiedAt) {
+            job.getFilesUnchanged().incrementAndGet();
+            return;
+        }
+        if (size > maxFileSizeMb * 1024 * 1024) {
+            job.error(key + ": 文件超过 " + maxFileSizeMb + "MB，已跳过");
+            return;
+        }
+        try {
+            ScannedFile scanned = readFile(file, key, size, modifiedAt, previous, job);
+            results.put(scanned);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            job.error(key + ": " + e.getMessage());
+        }
+    }
+
+    private ScannedFile readFile(Path file, String key, long size, long modifiedAt, FileState previous,
+                                 CertificateImportJob job) throws IOException, GeneralSecurityException {
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // 映射区在通道关闭后仍然有效，直到缓冲区被回收
+            content = size >= mmapThresholdKb * 1024
+                ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                : ByteBuffer.wrap(Files.readAllBytes(file));
+        }
+        String sha256 = sha256Hex(content.duplicate());
+        FileState state = new FileState(size, modifiedAt, sha256);
+        if (previous != null && sha256.equals(previous.sha256)) {
+            job.getFilesUnchanged().incrementAndGet();
+            return new ScannedFile(key, state, null);
+        }
+        List<X509Certificate> certificates = "pkcs12".equals(fileType(file))
+            ? readPkcs12(content, key)
+            : readCertificates(content);
+        job.getFilesParsed().incrementAndGet();
+        List<ImportedCertificate> leaves = new ArrayList<>();
+        for (X509Certificate certificate : certificates) {
+            // 只导入终端实体证书，链中的中间证书和根证书不作为清单条目
+            if (certificate.getBasicConstraints() < 0) {
+                leaves.add(new ImportedCertificate(certificate, key));
+            }
+        }
+        job.getCertificatesFound().addAndGet(leaves.size());
+        return new ScannedFile(key, state, leaves);
+    }
+
+    /**
+     * 含 PEM 证书块时逐块解析（可以夹杂私钥等其他块），否则按 DER/PKCS#7 解析
+     */
+    static List<X509Certificate> readCertificates(ByteBuffer content) throws GeneralSecurityException {
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> certificates = new ArrayList<>();
+        int begin = indexOf(content, PEM_BEGIN, 0);
+        if (begin < 0) {
+            for (java.security.cert.Certificate certificate : factory.generateCertificates(new ByteBufferInputStream(content.duplicate()))) {
+                certificates.add((X509Certificate) certificate);
+            }
+            return certificates;
+        }
+        while (begin >= 0) {
+            int end = indexOf(content, PEM_END, begin + PEM_BEGIN.length);
+            if (end < 0) {
+                throw new GeneralSecurityException("PEM证书块没有结束标记");
+            }
+            ByteBuffer block = content.duplicate();
+            block.position(begin).limit(end + PEM_END.length);
+            certificates.add((X509Certificate) factory.generateCertificate(new ByteBufferInputStream(block.slice())));
+            begin = indexOf(content, PEM_BEGIN, end + PEM_END.length);
+        }
+        return certificates;
+    }
+
+    /**
+     * 依次尝试配置的密码，读取密钥库中全部条目的证书链
+     */
+    private List<X509Certificate> readPkcs12(ByteBuffer content, String key) throws GeneralSecurityException {
+        Exception last = null;
+        for (String password : pkcs12Passwords) {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(new ByteBufferInputStream(content.duplicate()), password.toCharArray());
+                Set<X509Certificate> certificates = new LinkedHashSet<>();
+                for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements(); ) {
+                    String alias = aliases.nextElement();
+                    java.security.cert.Certificate[] chain = keyStore.getCertificateChain(alias);
+                    if (chain != null) {
+                        for (java.security.cert.Certificate certificate : chain) {
+                            certificates.add((X509Certificate) certificate);
+                        }
+                    } else if (keyStore.getCertificate(alias) instanceof X509Certificate) {
+                        certificates.add((X509Certificate) keyStore.getCertificate(alias));
+                    }
+                }
+                return new ArrayList<>(certificates);
+            } catch (IOException e) {
+                // 密码错误时 load 抛出 IOException
+                last = e;
+            }
+        }
+        throw new GeneralSecurityException("无法用配置的密码打开 PKCS12: " + key, last);
+    }
+
+    /**
+     * 一批文件在一个事务中写入：按指纹插入新证书或补全已有证书的签发者，并更新文件记录
+     */
+    private void write(List<ScannedFile> batch, CertificateImportJob job) {
+        Map<String, ImportedCertificate> byFingerprint = new LinkedHashMap<>();
+        for (ScannedFile file : batch) {
+            if (file.certificates != null) {
+                file.certificates.forEach(certificate -> byFingerprint.putIfAbsent(certificate.fingerprint, certificate));
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Certificate> existing = new HashMap<>();
+            if (!byFingerprint.isEmpty()) {
+                for (Certificate certificate : certificateRepository.findByFingerprintIn(byFingerprint.keySet())) {
+                    existing.putIfAbsent(certificate.getFingerprint(), certificate);
+                }
+            }
+            List<Certificate> changed = new ArrayList<>();
+            int inserted = 0;
+            for (ImportedCertificate imported : byFingerprint.values()) {
+                Certificate certificate = existing.get(imported.fingerprint);
+                if (certificate == null) {
+                    changed.add(newCertificate(imported));
+                    inserted++;
+                } else if (certificate.getIssuer() == null) {
+                    // 同一张证书已经在库中（签发或之前导入），只补全缺失的签发者
+                    certificate.setIssuer(imported.issuer);
+                    changed.add(certificate);
+                }
+            }
+            certificateRepository.saveAll(changed);
+            long now = System.currentTimeMillis();
+            jdbcTemplate.batchUpdate("insert or replace into certificate_import_files "
+                    + "(path, size, modified_at, sha256, scanned_at) values (?, ?, ?, ?, ?)",
+                batch.stream()
+                    .map(file -> new Object[] {file.path, file.state.size, file.state.modifiedAt, file.state.sha256, now})
+                    .collect(Collectors.toList()));
+            job.getCertificatesInserted().addAndGet(inserted);
+            job.getCertificatesUpdated().addAndGet(changed.size() - inserted);
+        });
+    }
+
+    private Certificate newCertificate(ImportedCertificate imported) {
+        Certificate certificate = new Certificate();
+        certificate.setName(imported.domains.isEmpty() ? imported.fingerprint : imported.domains.get(0));
+        certificate.setDomains(imported.domains.isEmpty() ? null : String.join(",", imported.domains));
+        certificate.setType("IMPORTED");
+        certificate.setEmail(importEmail);
+        certificate.setStatus(CertificateStatus.IMPORTED.name());
+        certificate.setDescription("从文件导入: " + imported.source);
+        certificate.setNotAfter(imported.notAfter);
+        certificate.setSerialNumber(imported.serialNumber);
+        certificate.setFingerprint(imported.fingerprint);
+        certificate.setIssuer(imported.issuer);
+        return certificate;
+    }
+
+    /**
+     * 上次扫描到、这次不存在的文件删除记录，文件重新出现时会重新解析；已导入的证书记录保留
+     */
+    private void forgetMissingFiles(Map<String, FileState> known, Set<String> seen) {
+        List<Object[]> missing = known.keySet().stream()
+            .filter(path -> !seen.contains(path))
+            .map(path -> new Object[] {path})
+            .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from certificate_import_files where path = ?", missing);
+            log.info("已删除{}个不存在的导入文件记录", missing.size());
+        }
+    }
+
+    private Map<String, FileState> loadFileStates(Path root) {
+        // 用范围条件代替 LIKE，走主键索引
+        String prefix = root.toString().endsWith(root.getFileSystem().getSeparator())
+            ? root.toString() : root + root.getFileSystem().getSeparator();
+        Map<String, FileState> states = new HashMap<>();
+        jdbcTemplate.query("select path, size, modified_at, sha256 from certificate_import_files where path >= ? and path < ?",
+            rs -> {
+                states.put(rs.getString(1), new FileState(rs.getLong(2), rs.getLong(3), rs.getString(4)));
+            },
+            prefix, prefix + Character.MAX_VALUE);
+        return states;
+    }
+
+    private static String fileType(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        String suffix = dot < 0 ? "" : name.substring(dot);
+        if (CERTIFICATE_SUFFIXES.contains(suffix)) {
+            return "x509";
+        }
+        return PKCS12_SUFFIXES.contains(suffix) ? "pkcs12" : null;
+    }
+
+    /**
+     * 证书中的 DNS 类型 SAN，没有时取主题的 CN
+     */
+    private static List<String> domainsOf(X509Certificate certificate) {
+        Set<String> domains = new LinkedHashSet<>();
+        IssuanceWorker.subjectAlternativeNames(certificate)
+            .forEach(name -> domains.add(name.toLowerCase(Locale.ROOT)));
+        if (domains.isEmpty()) {
+            try {
+                for (Rdn rdn : new LdapName(certificate.getSubjectX500Principal().getName()).getRdns()) {
+                    if ("CN".equalsIgnoreCase(rdn.getType())) {
+                        domains.add(String.valueOf(rdn.getValue()).toLowerCase(Locale.ROOT));
+                    }
+                }
+            } catch (javax.naming.InvalidNameException e) {
+                // 主题无法解析时只用指纹标识
+            }
+        }
+        return new ArrayList<>(domains);
+    }
+
+    private static String sha256Hex(ByteBuffer content) throws GeneralSecurityException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(content);
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static int indexOf(ByteBuffer content, byte[] pattern, int from) {
+        int last = content.limit() - pattern.length;
+        outer:
+        for (int i = Math.max(from, content.position()); i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (content.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 读取 ByteBuffer（包括内存映射区）的输入流，不复制内容
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.certapp.service;
 
 import com.certapp.model.Certificate;
+import com.certapp.model.CertificateFilter;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateStatusEvent;
+import com.certapp.model.SanApplyRequest;
+import com.certapp.model.SanApplyResult;
 import com.certapp.repository.CertificateRepository;
-import com.certapp.service.LetsEncryptService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.concurrent.ExecutorService;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -17,11 +33,58 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class CertificateService {
     private final CertificateRepository certificateRepository;
-    private final LetsEncryptService letsEncryptService;
+    private final IssuanceWorker issuanceWorker;
+    private final IssuanceLeases issuanceLeases;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final int RECENT_CACHE_MAX_SIZE = 1000;
+    private static final int MAX_HOSTNAME_LENGTH = 253;
+    /**
+     * LDH 标签（字母、数字、连字符，首尾不能是连字符），至少两级，允许 *. 通配符前缀
+     */
+    private static final Pattern HOSTNAME = Pattern.compile(
+        "(\\*\\.)?([a-z0-9]([a-z0-9-]{0,61}[a-z0-9])?\\.)+[a-z0-9]([a-z0-9-]{0,61}[a-z0-9])?");
+    
+    private final Map<String, CompletableFuture<Certificate>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, String> inFlightKeys = new ConcurrentHashMap<>();
+    private final Map<String, RecentEntry> recent = new ConcurrentHashMap<>();
+    
+    @Value("${certapp.issuance.max-domains-per-order:100}")
+    private int maxDomainsPerOrder;
+    
+    @Value("${certapp.listing.max-page-size:1000}")
+    private int maxPageSize;
+    
+    @Value("${certapp.issuance.recent-cache-seconds:300}")
+    private long recentCacheSeconds;
     
     @Transactional(readOnly = true)
-    public List<Certificate> getList() {
-        return certificateRepository.findAll();
+    public List<Certificate> getPage(CertificateFilter filter, Long afterId, int limit) {
+        return certificateRepository.findPage(filter, afterId, Math.max(1, Math.min(limit, maxPageSize)));
+    }
+    
+    /**
+     * 按游标逐页读取并交给调用方输出，堆上同时只保留一页数据
+     */
+    public void export(CertificateFilter filter, PageConsumer consumer) throws IOException {
+        Long afterId = null;
+        while (true) {
+            List<Certificate> page = certificateRepository.findPage(filter, afterId, EXPORT_PAGE_SIZE);
+            if (page.isEmpty()) {
+                return;
+            }
+            consumer.accept(page);
+            if (page.size() < EXPORT_PAGE_SIZE) {
+                return;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+    
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(List<Certificate> page) throws IOException;
     }
     
     @Transactional(readOnly = true)
@@ -35,22 +98,230 @@ public class CertificateService {
         return certificateRepository.save(certificate);
     }
     
-    @Transactional
+    /**
+     * 只登记签发任务并立即返回，实际的ACME流程由 IssuanceWorker 在后台执行
+     */
     public Certificate oneClickApply(Certificate request) {
         log.debug("开始处理证书申请: {}", request.getName());
+        request.setName(normalizeDomain(request.getName()));
+        request.setDomains(request.getName());
+        return submitOnce(List.of(request.getName()), request);
+    }
+    
+    /**
+     * 多域名申请：去重后按 max-domains-per-order 分组，每组一个SAN订单。
+     * 某一组因签发队列已满被拒绝时，前面的组已经入队，后面的组不再提交，逐组返回结果
+     */
+    public List<SanApplyResult> oneClickApply(SanApplyRequest request) {
+        List<String> domains = normalizeDomains(request.getDomains());
+        if (domains.isEmpty()) {
+            throw new IllegalArgumentException("域名列表不能为空");
+        }
+        
+        List<SanApplyResult> result = new ArrayList<>();
+        String rejected = null;
+        for (int from = 0; from < domains.size(); from += maxDomainsPerOrder) {
+            List<String> group = domains.subList(from, Math.min(from + maxDomainsPerOrder, domains.size()));
+            SanApplyResult groupResult = new SanApplyResult();
+            groupResult.setDomains(List.copyOf(group));
+            if (rejected == null) {
+                Certificate certificate = new Certificate();
+                certificate.setName(group.get(0));
+                certificate.setDomains(String.join(",", group));
+                certificate.setType(request.getType());
+                certificate.setEmail(request.getEmail());
+                try {
+                    groupResult.setCertificate(submitOnce(group, certificate));
+                    groupResult.setAccepted(true);
+                } catch (RejectedExecutionException e) {
+                    rejected = "签发队列已满，请稍后重试";
+                }
+            }
+            if (!groupResult.isAccepted()) {
+                groupResult.setError(rejected);
+            }
+            result.add(groupResult);
+        }
+        log.info("多域名申请已拆分为{}个订单: {}个域名", result.size(), domains.size());
+        return result;
+    }
+    
+    /**
+     * 去除空白、转为小写并去重，保持原有顺序；空白项忽略，其余不是合法域名时抛出 IllegalArgumentException
+     */
+    static List<String> normalizeDomains(Collection<String> domains) {
+        if (domains == null) {
+            return List.of();
+        }
+        return domains.stream()
+            .filter(domain -> domain != null && !domain.isBlank())
+            .map(CertificateService::normalizeDomain)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * 去除空白并转为小写，再校验域名格式。域名会出现在文件名、日志和ACME订单中，入队前就拒绝非法输入
+     */
+    static String normalizeDomain(String domain) {
+        if (domain == null || domain.isBlank()) {
+            throw new IllegalArgumentException("域名不能为空");
+        }
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        if (normalized.length() > MAX_HOSTNAME_LENGTH || !HOSTNAME.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("非法域名: " + domain);
+        }
+        return normalized;
+    }
+    
+    /**
+     * 同一组域名同时只会有一个签发任务：后来的请求直接挂到进行中的任务上，多个节点之间靠域名集合的租约去重；
+     * 最近签发成功的证书在缓存有效期内直接返回，不再创建新订单
+     */
+    private Certificate submitOnce(List<String> domains, Certificate request) {
+        String key = domains.stream().sorted().collect(Collectors.joining(","));
+        
+        Certificate recent = recentlyIssued(key);
+        if (recent != null) {
+            log.info("命中最近签发的证书: id={}, domains={}", recent.getId(), key);
+            return recent;
+        }
+        
+        CompletableFuture<Certificate> mine = new CompletableFuture<>();
+        CompletableFuture<Certificate> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            Certificate attached;
+            try {
+                attached = existing.join();
+            } catch (CompletionException e) {
+                // 与发起方抛出同样的异常，控制器按相同的状态码应答
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            log.info("合并到进行中的签发任务: id={}, domains={}", attached.getId(), key);
+            return attached;
+        }
+        Certificate saved = null;
+        Certificate attached;
         try {
-            letsEncryptService.requestCertificate(request.getName());
-            log.info("Let's Encrypt证书申请成功: {}", request.getName());
-            
-            request.setStatus("GENERATED");
-            request.setDescription("Certificate generated by Let's Encrypt");
-            
-            Certificate saved = certificateRepository.save(request);
-            log.info("证书信息保存成功: id={}", saved.getId());
+            attached = clusterHolder(domains);
+            if (attached == null) {
+                saved = save(request);
+                if (issuanceLeases.acquire(saved.getId(), domains).isEmpty()) {
+                    // 其他节点同时提交了同一组域名并先拿到租约，撤回刚插入的记录，挂到它的任务上
+                    certificateRepository.deleteById(saved.getId());
+                    saved = null;
+                    attached = clusterHolder(domains);
+                    if (attached == null) {
+                        throw new RejectedExecutionException("同一组域名正在其他节点签发，请稍后重试");
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        if (attached != null) {
+            // 终态事件由持有租约的节点发布，这里不登记 inFlightKeys，直接解除本地合并
+            mine.complete(attached);
+            inFlight.remove(key, mine);
+            log.info("合并到其他节点的签发任务: id={}, domains={}", attached.getId(), key);
+            return attached;
+        }
+        // 拿到租约后才对外可见，订阅全部证书的页面不需要重新查询列表
+        eventPublisher.publishEvent(new CertificateStatusEvent(saved.getId(), CertificateStatus.QUEUED,
+            saved.getDescription(), LocalDateTime.now()));
+        // 先登记再交给签发线程：签发很快失败时终态事件可能在 submit 返回前就已发布
+        inFlightKeys.put(saved.getId(), key);
+        mine.complete(saved);
+        try {
+            submit(saved);
             return saved;
-        } catch (Exception e) {
-            log.error("证书申请失败: domain=" + request.getName(), e);
-            throw new RuntimeException("证书申请失败", e);
+        } catch (RuntimeException e) {
+            inFlightKeys.remove(saved.getId());
+            inFlight.remove(key, mine);
+            throw e;
+        }
+    }
+    
+    /**
+     * 任务结束后解除合并，签发成功的记入短期缓存
+     */
+    @EventListener
+    public void onStatusChanged(CertificateStatusEvent event) {
+        if (!event.getStatus().isTerminal()) {
+            return;
+        }
+        String key = inFlightKeys.remove(event.getId());
+        if (key == null) {
+            return;
+        }
+        inFlight.remove(key);
+        if (event.getStatus() == CertificateStatus.ISSUED && recentCacheSeconds > 0) {
+            if (recent.size() >= RECENT_CACHE_MAX_SIZE) {
+                long now = System.nanoTime();
+                recent.values().removeIf(entry -> entry.expiresAt - now < 0);
+            }
+            recent.put(key, new RecentEntry(event.getId(), System.nanoTime() + recentCacheSeconds * 1_000_000_000L));
+        }
+    }
+    
+    private Certificate recentlyIssued(String key) {
+        RecentEntry entry = recent.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() < 0) {
+            recent.remove(key, entry);
+            return null;
+        }
+        Certificate certificate = certificateRepository.findById(entry.id).orElse(null);
+        if (certificate == null || !CertificateStatus.ISSUED.name().equals(certificate.getStatus())) {
+            recent.remove(key, entry);
+            return null;
+        }
+        return certificate;
+    }
+    
+    private Certificate save(Certificate request) {
+        request.setId(null);
+        request.setStatus(CertificateStatus.QUEUED.name());
+        request.setDescription("等待签发");
+
+        return certificateRepository.save(request);
+    }
+    
+    /**
+     * 集群中正在签发这组域名的证书（可能在其他节点），没有时返回 null
+     */
+    private Certificate clusterHolder(List<String> domains) {
+        return issuanceLeases.holder(domains).flatMap(certificateRepository::findById).orElse(null);
+    }
+    
+    private void submit(Certificate saved) {
+        try {
+            saved.setEstimatedWaitSeconds(issuanceWorker.submit(saved).toSeconds());
+        } catch (RejectedExecutionException e) {
+            log.warn("签发队列已满，拒绝申请: domain={}", saved.getName());
+            certificateRepository.updateStatus(saved.getId(), CertificateStatus.FAILED.name(),
+                "签发队列已满，请稍后重试", LocalDateTime.now());
+            eventPublisher.publishEvent(new CertificateStatusEvent(saved.getId(), CertificateStatus.FAILED,
+                "签发队列已满，请稍后重试", LocalDateTime.now()));
+            throw e;
+        }
+        log.info("证书申请已入队: id={}", saved.getId());
+    }
+    
+    private static class RecentEntry {
+        final Long id;
+        final long expiresAt;
+        
+        RecentEntry(Long id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
         }
     }
-} 
\ No newline at end of file
+}
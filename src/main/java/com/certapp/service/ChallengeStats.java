@@ -0,0 +1,44 @@
+package com.certapp.service;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 验证响应查询的命中/未命中次数与查询耗时
+ */
+public class ChallengeStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    void record(boolean hit, long nanos) {
+        (hit ? hits : misses).increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    Snapshot snapshot(int size) {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        double avgMicros = lookups == 0 ? 0 : totalNanos.sum() / 1000.0 / lookups;
+        return new Snapshot(size, hitCount, missCount, avgMicros, maxNanos.get() / 1000.0);
+    }
+
+    public static class Snapshot {
+        public final int size;
+        public final long hits;
+        public final long misses;
+        public final double avgLookupMicros;
+        public final double maxLookupMicros;
+
+        Snapshot(int size, long hits, long misses, double avgLookupMicros, double maxLookupMicros) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.avgLookupMicros = avgLookupMicros;
+            this.maxLookupMicros = maxLookupMicros;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.certapp.service;
+
+import java.time.Duration;
+
+/**
+ * HTTP-01 验证响应存储
+ * 响应内容在写入时就编码成 text/plain 字节，查询时直接输出，不再做字符串拼接或编码。
+ */
+public interface ChallengeStore {
+
+    /**
+     * 保存 token 对应的 key authorization，超过 ttl 后自动失效
+     */
+    void put(String token, String authorization, Duration ttl);
+
+    /**
+     * 返回预先编码好的响应字节，不存在或已过期时返回 null。
+     * 返回的数组由存储共享，调用方不得修改。
+     */
+    byte[] get(String token);
+
+    void remove(String token);
+
+    ChallengeStats.Snapshot stats();
+}
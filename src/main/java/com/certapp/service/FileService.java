@@ -1,43 +1,139 @@
 package com.certapp.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 @Service
 @RequiredArgsConstructor
 public class FileService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 32;
+    // Tomcat NIO 连接器的 sendfile 请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final ExecutorService fileIOExecutor;
-    private static final int BUFFER_SIZE = 1024 * 1024; // 1MB缓冲区
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
 
+    /**
+     * 把整个文件读入内存，只适合小文件；下载请使用 {@link #download}。
+     * 读取时复用池中的直接缓冲区，避免每次分配。
+     */
     public Future<byte[]> readFileAsync(String filePath) {
         return fileIOExecutor.submit(() -> {
-            try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(
-                    Path.of(filePath), StandardOpenOption.READ)) {
-                
-                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-                byte[] content = new byte[(int) channel.size()];
-                int position = 0;
-                
-                while (position < channel.size()) {
-                    Future<Integer> future = channel.read(buffer, position);
-                    int bytesRead = future.get();
-                    
-                    if (bytesRead == -1) break;
-                    
-                    buffer.flip();
-                    buffer.get(content, position, bytesRead);
-                    buffer.clear();
-                    position += bytesRead;
+            try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE - 8) {
+                    throw new IOException("文件过大: " + filePath);
+                }
+                byte[] content = new byte[(int) size];
+                ByteBuffer buffer = acquireBuffer();
+                try {
+                    int position = 0;
+                    while (position < content.length) {
+                        int bytesRead = channel.read(buffer, position);
+                        if (bytesRead == -1) break;
+                        
+                        buffer.flip();
+                        buffer.get(content, position, bytesRead);
+                        buffer.clear();
+                        position += bytesRead;
+                    }
+                } finally {
+                    releaseBuffer(buffer);
                 }
-                
                 return content;
             }
         });
     }
-} 
\ No newline at end of file
+
+    /**
+     * 下载文件，内存占用与文件大小无关：
+     * 1. If-None-Match / If-Modified-Since 命中时返回 304
+     * 2. 没有 Range 头且连接器支持 sendfile 时交给 Tomcat 直接从磁盘发送
+     * 3. 否则返回 FileSystemResource，由 Spring 按 Range 返回 206 分段或流式输出整个文件
+     */
+    public ResponseEntity<Resource> download(Path file, String downloadName, MediaType contentType,
+                                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!attributes.isRegularFile()) {
+            return ResponseEntity.notFound().build();
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).lastModified(lastModified).build();
+        }
+        
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+            .eTag(etag)
+            .lastModified(lastModified)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(downloadName).build().toString())
+            .contentType(contentType);
+        
+        if ("GET".equals(request.getMethod()) && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return builder.contentLength(size).build();
+        }
+        return builder.body(new FileSystemResource(file));
+    }
+
+    /**
+     * 解析目录下的文件名，拒绝跳出该目录的路径
+     */
+    public Path resolve(Path directory, String fileName) {
+        Path base = directory.toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+        if (!file.startsWith(base) || file.equals(base)) {
+            throw new IllegalArgumentException("非法文件路径: " + fileName);
+        }
+        return file;
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+}
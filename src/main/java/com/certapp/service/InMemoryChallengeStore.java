@@ -0,0 +1,87 @@
+package com.certapp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单节点使用的内存验证响应存储，按 TTL 过期，超过容量时先清理过期项，再淘汰最早过期的项
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "certapp.challenge.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryChallengeStore implements ChallengeStore {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ChallengeStats stats = new ChallengeStats();
+
+    private int maxEntries;
+
+    /**
+     * 至少保留一项，否则淘汰循环在空表上也满足 size >= maxEntries，永远不会结束
+     */
+    @Value("${certapp.challenge.max-entries:10000}")
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    @Override
+    public void put(String token, String authorization, Duration ttl) {
+        if (entries.size() >= maxEntries && !entries.containsKey(token)) {
+            evict();
+        }
+        entries.put(token, new Entry(authorization.getBytes(StandardCharsets.US_ASCII),
+            System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public byte[] get(String token) {
+        long start = System.nanoTime();
+        Entry entry = entries.get(token);
+        if (entry != null && entry.expiresAt - start < 0) {
+            entries.remove(token, entry);
+            entry = null;
+        }
+        stats.record(entry != null, System.nanoTime() - start);
+        return entry == null ? null : entry.body;
+    }
+
+    @Override
+    public void remove(String token) {
+        entries.remove(token);
+    }
+
+    @Override
+    public ChallengeStats.Snapshot stats() {
+        return stats.snapshot(entries.size());
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAt - now < 0);
+        while (entries.size() >= maxEntries) {
+            entries.entrySet().stream()
+                .min(Comparator.comparingLong(e -> e.getValue().expiresAt - now))
+                .ifPresent(e -> {
+                    entries.remove(e.getKey(), e.getValue());
+                    log.warn("验证响应存储已满，淘汰: token={}", e.getKey());
+                });
+        }
+    }
+
+    private static class Entry {
+        final byte[] body;
+        final long expiresAt;
+
+        Entry(byte[] body, long expiresAt) {
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.certapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.shredzone.acme4j.exception.AcmeRateLimitedException;
+import org.shredzone.acme4j.exception.AcmeServerException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 签发任务的准入控制
+ * 按CA的速率限制在本地维护令牌桶：整个ACME账户的新订单数、每个注册域名（eTLD+1）的证书数、
+ * 同一组域名的重复证书数。令牌不足的任务留在队列里等待而不是直接失败；
+ * 队列按租户（申请邮箱）分开，各租户轮流出队，一个租户的大批量申请不会挡住其他租户。
+ * CA返回 rateLimited 时按问题描述判断是哪一类限制，按 Retry-After 暂停对应的令牌桶，任务重新排队。
+ * 令牌桶只保存在内存中，重启后从满桶开始。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IssuanceAdmission {
+    private static final String RATE_LIMITED = "urn:ietf:params:acme:error:rateLimited";
+    private static final String DEFAULT_TENANT = "default";
+    private static final int SCAN_LIMIT = 32;
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final ExecutorService issuanceExecutor;
+
+    @Value("${certapp.admission.max-queued:10000}")
+    private int maxQueued;
+
+    @Value("${certapp.admission.account-orders:300}")
+    private int accountOrders;
+
+    @Value("${certapp.admission.account-window-minutes:180}")
+    private long accountWindowMinutes;
+
+    @Value("${certapp.admission.domain-certificates:50}")
+    private int domainCertificates;
+
+    @Value("${certapp.admission.duplicate-certificates:5}")
+    private int duplicateCertificates;
+
+    @Value("${certapp.admission.certificate-window-hours:168}")
+    private long certificateWindowHours;
+
+    @Value("${certapp.admission.default-pause-seconds:3600}")
+    private long defaultPauseSeconds;
+
+    @Value("${certapp.admission.public-suffixes:com.cn,net.cn,org.cn,gov.cn,edu.cn,com.hk,com.tw,co.uk,org.uk,ac.uk,co.jp,com.au,net.au,co.nz,co.kr,com.sg,com.br,co.in,github.io}")
+    private Set<String> publicSuffixes;
+
+    /**
+     * 一个排队中的签发任务
+     */
+    public static final class Ticket {
+        private final String tenant;
+        private final List<String> domains;
+        private final boolean renewal;
+        private final Consumer<Ticket> task;
+        private final List<String> registeredDomains;
+        private final String duplicateKey;
+        private volatile Duration estimatedWait = Duration.ZERO;
+
+        Ticket(String tenant, List<String> domains, boolean renewal, Consumer<Ticket> task,
+               List<String> registeredDomains) {
+            this.tenant = tenant;
+            this.domains = domains;
+            this.renewal = renewal;
+            this.task = task;
+            this.registeredDomains = registeredDomains;
+            this.duplicateKey = domains.stream().sorted().collect(Collectors.joining(","));
+        }
+
+        public List<String> getDomains() {
+            return domains;
+        }
+
+        /**
+         * 入队时估算的排队时间
+         */
+        public Duration getEstimatedWait() {
+            return estimatedWait;
+        }
+    }
+
+    private final Map<String, Deque<Ticket>> queues = new HashMap<>();
+    private final Deque<String> tenants = new ArrayDeque<>();
+    private final Map<String, TokenBucket> domainBuckets = new HashMap<>();
+    private final Map<String, TokenBucket> duplicateBuckets = new HashMap<>();
+    private TokenBucket accountBucket;
+    private ScheduledExecutorService dispatcher;
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpAt;
+    private int queued;
+    private long lastDispatch;
+    private boolean backlogged;
+    private double dispatchIntervalNanos;
+    private long lastPrune;
+
+    @PostConstruct
+    public void start() {
+        accountBucket = new TokenBucket(accountOrders, TimeUnit.MINUTES.toNanos(accountWindowMinutes));
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "issuance-admission");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastPrune = System.nanoTime();
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 任务入队，令牌足够时立即交给签发线程池；队列已满时抛出 RejectedExecutionException
+     *
+     * @param tenant  租户，目前取申请邮箱
+     * @param renewal 续期不计入注册域名的证书数限制，与CA的规则一致
+     */
+    public Ticket submit(String tenant, List<String> domains, boolean renewal, Consumer<Ticket> task) {
+        Ticket ticket = new Ticket(tenant == null || tenant.isBlank() ? DEFAULT_TENANT : tenant.toLowerCase(Locale.ROOT),
+            List.copyOf(domains), renewal, task, registeredDomains(domains));
+        synchronized (this) {
+            if (queued >= maxQueued) {
+                throw new RejectedExecutionException("签发排队任务已达上限: " + maxQueued);
+            }
+            enqueue(ticket, false);
+            ticket.estimatedWait = Duration.ofNanos(estimateWait(ticket, System.nanoTime()));
+        }
+        wakeUp(0);
+        return ticket;
+    }
+
+    /**
+     * 是否为CA返回的 rateLimited 错误
+     */
+    public static boolean isRateLimited(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof AcmeServerException
+            && RATE_LIMITED.equals(String.valueOf(((AcmeServerException) cause).getType()));
+    }
+
+    /**
+     * 按 rateLimited 错误的描述暂停对应的令牌桶，并把任务放回所属租户队列的最前面
+     */
+    public void requeueRateLimited(Ticket ticket, Throwable error) {
+        Throwable cause = unwrap(error);
+        Instant retryAfter = cause instanceof AcmeRateLimitedException ? ((AcmeRateLimitedException) cause).getRetryAfter() : null;
+        long pauseNanos = retryAfter != null
+            ? Math.max(0, Duration.between(Instant.now(), retryAfter).toNanos())
+            : TimeUnit.SECONDS.toNanos(defaultPauseSeconds);
+        String detail = String.valueOf(cause.getMessage()).toLowerCase(Locale.ROOT);
+        String scope;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (detail.contains("exact set")) {
+                scope = "duplicate " + ticket.duplicateKey;
+                duplicateBucket(ticket.duplicateKey).pause(now, pauseNanos);
+            } else if (detail.contains("already issued for") || detail.contains("registered domain")) {
+                scope = "domain " + ticket.registeredDomains;
+                ticket.registeredDomains.forEach(domain -> domainBucket(domain).pause(now, pauseNanos));
+            } else {
+                scope = "account";
+                accountBucket.pause(now, pauseNanos);
+            }
+            enqueue(ticket, true);
+        }
+        log.warn("触发CA速率限制，暂停{}约{}秒后重试: domains={}, {}", scope,
+            TimeUnit.NANOSECONDS.toSeconds(pauseNanos), ticket.domains, cause.getMessage());
+        wakeUp(0);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    /**
+     * 计算注册域名（eTLD+1）：末尾两级在 public-suffixes 中时取三级，否则取两级
+     */
+    String registeredDomain(String host) {
+        String name = host.toLowerCase(Locale.ROOT);
+        if (name.startsWith("*.")) {
+            name = name.substring(2);
+        }
+        String[] labels = name.split("\\.");
+        if (labels.length <= 2 || name.matches("^[0-9.]+$") || name.contains(":")) {
+            return name;
+        }
+        String lastTwo = labels[labels.length - 2] + "." + labels[labels.length - 1];
+        int keep = publicSuffixes.contains(lastTwo) ? 3 : 2;
+        return String.join(".", Arrays.copyOfRange(labels, Math.max(0, labels.length - keep), labels.length));
+    }
+
+    private List<String> registeredDomains(List<String> domains) {
+        Set<String> registered = new LinkedHashSet<>();
+        domains.forEach(domain -> registered.add(registeredDomain(domain)));
+        return new ArrayList<>(registered);
+    }
+
+    private void enqueue(Ticket ticket, boolean first) {
+        Deque<Ticket> queue = queues.computeIfAbsent(ticket.tenant, t -> {
+            tenants.addLast(t);
+            return new ArrayDeque<>();
+        });
+        if (first) {
+            queue.addFirst(ticket);
+        } else {
+            queue.addLast(ticket);
+        }
+        queued++;
+    }
+
+    private void wakeUp(long delayNanos) {
+        synchronized (this) {
+            long at = System.nanoTime() + delayNanos;
+            if (wakeUp != null && !wakeUp.isDone() && wakeUpAt - at <= 0) {
+                return;
+            }
+            if (wakeUp != null) {
+                wakeUp.cancel(false);
+            }
+            wakeUpAt = at;
+            try {
+                wakeUp = dispatcher.schedule(this::dispatch, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // 应用正在关闭
+            }
+        }
+    }
+
+    /**
+     * 各租户轮流出队，每轮每个租户最多放行一个任务；没有可放行的任务时在最早有令牌的时刻再次调度
+     */
+    private void dispatch() {
+        long nextWake = Long.MAX_VALUE;
+        synchronized (this) {
+            wakeUp = null;
+            long now = System.nanoTime();
+            boolean progress = true;
+            while (progress && !tenants.isEmpty()) {
+                progress = false;
+                for (int i = tenants.size(); i > 0 && !tenants.isEmpty(); i--) {
+                    if (!executorHasCapacity()) {
+                        nextWake = Math.min(nextWake, RETRY_NANOS);
+                        progress = false;
+                        break;
+                    }
+                    String tenant = tenants.pollFirst();
+                    Deque<Ticket> queue = queues.get(tenant);
+                    Ticket ticket = null;
+                    int scanned = 0;
+                    for (Iterator<Ticket> it = queue.iterator(); it.hasNext() && scanned < SCAN_LIMIT; scanned++) {
+                        Ticket candidate = it.next();
+                        long wait = waitNanos(candidate, now);
+                        if (wait == 0) {
+                            it.remove();
+                            ticket = candidate;
+                            break;
+                        }
+                        nextWake = Math.min(nextWake, wait);
+                    }
+                    if (ticket != null) {
+                        admit(ticket, now);
+                        progress = true;
+                    }
+                    if (queue.isEmpty()) {
+                        queues.remove(tenant);
+                    } else {
+                        tenants.addLast(tenant);
+                    }
+                }
+            }
+            if (now - lastPrune > PRUNE_INTERVAL_NANOS) {
+                domainBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+                duplicateBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+                lastPrune = now;
+            }
+            if (tenants.isEmpty()) {
+                return;
+            }
+        }
+        wakeUp(nextWake == Long.MAX_VALUE ? RETRY_NANOS : nextWake);
+    }
+
+    private void admit(Ticket ticket, long now) {
+        accountBucket.take(now);
+        duplicateBucket(ticket.duplicateKey).take(now);
+        if (!ticket.renewal) {
+            ticket.registeredDomains.forEach(domain -> domainBucket(domain).take(now));
+        }
+        queued--;
+        if (backlogged) {
+            long interval = now - lastDispatch;
+            dispatchIntervalNanos = dispatchIntervalNanos == 0 ? interval : dispatchIntervalNanos * 0.8 + interval * 0.2;
+        }
+        lastDispatch = now;
+        backlogged = queued > 0;
+        issuanceExecutor.execute(() -> ticket.task.accept(ticket));
+    }
+
+    /**
+     * 任务所需的全部令牌桶都有令牌时返回 0，否则返回最早可以放行的等待时间
+     */
+    private long waitNanos(Ticket ticket, long now) {
+        long wait = Math.max(accountBucket.nanosUntil(1, now), duplicateBucket(ticket.duplicateKey).nanosUntil(1, now));
+        if (!ticket.renewal) {
+            for (String domain : ticket.registeredDomains) {
+                wait = Math.max(wait, domainBucket(domain).nanosUntil(1, now));
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * 估算排队时间：轮转出队时排在前面的任务数乘以近期的出队间隔，
+     * 再与账户令牌桶供给这些任务所需的时间、本任务自身令牌桶的等待时间取较大值
+     */
+    private long estimateWait(Ticket ticket, long now) {
+        int position = 0;
+        for (Ticket queuedTicket : queues.get(ticket.tenant)) {
+            if (queuedTicket == ticket) {
+                break;
+            }
+            position++;
+        }
+        long ahead = position;
+        for (Map.Entry<String, Deque<Ticket>> entry : queues.entrySet()) {
+            if (!entry.getKey().equals(ticket.tenant)) {
+                ahead += Math.min(entry.getValue().size(), position + 1);
+            }
+        }
+        long wait = (long) (ahead * dispatchIntervalNanos);
+        wait = Math.max(wait, accountBucket.nanosUntil(ahead + 1, now));
+        return Math.max(wait, waitNanos(ticket, now));
+    }
+
+    private boolean executorHasCapacity() {
+        return !(issuanceExecutor instanceof ThreadPoolExecutor)
+            || ((ThreadPoolExecutor) issuanceExecutor).getQueue().remainingCapacity() > 0;
+    }
+
+    private TokenBucket domainBucket(String domain) {
+        return domainBuckets.computeIfAbsent(domain,
+            d -> new TokenBucket(domainCertificates, TimeUnit.HOURS.toNanos(certificateWindowHours)));
+    }
+
+    private TokenBucket duplicateBucket(String key) {
+        return duplicateBuckets.computeIfAbsent(key,
+            k -> new TokenBucket(duplicateCertificates, TimeUnit.HOURS.toNanos(certificateWindowHours)));
+    }
+
+    /**
+     * 令牌桶：容量等于窗口内允许的次数，按窗口均匀补充；暂停期间不补充也不放行
+     * 只在 IssuanceAdmission 的锁内访问
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long updatedAt;
+        private long pausedUntil;
+
+        TokenBucket(int capacity, long windowNanos) {
+            this.capacity = Math.max(1, capacity);
+            this.tokensPerNano = this.capacity / Math.max(1, windowNanos);
+            this.tokens = this.capacity;
+            this.updatedAt = System.nanoTime();
+            this.pausedUntil = updatedAt;
+        }
+
+        long nanosUntil(double needed, long now) {
+            refill(now);
+            long paused = Math.max(0, pausedUntil - now);
+            if (tokens >= needed) {
+                return paused;
+            }
+            // 暂停期间不补充，缺少的令牌从暂停结束时开始累积
+            return paused + (long) Math.ceil((needed - tokens) / tokensPerNano);
+        }
+
+        void take(long now) {
+            refill(now);
+            tokens -= 1;
+        }
+
+        /**
+         * 暂停到指定时间，恢复后只保留一个令牌用于重试
+         */
+        void pause(long now, long nanos) {
+            refill(now);
+            tokens = Math.min(tokens, 1);
+            pausedUntil = Math.max(pausedUntil, now + nanos);
+            updatedAt = pausedUntil;
+        }
+
+        boolean isIdle(long now) {
+            refill(now);
+            return tokens >= capacity && pausedUntil - now <= 0;
+        }
+
+        private void refill(long now) {
+            if (now - updatedAt > 0) {
+                tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+                updatedAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.certapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 多节点共用同一数据库时，签发和续期任务的租约
+ * 按规范化后的域名集合加锁，每组域名一行，记录当前处理的证书、持有节点、防护令牌（fencing token）和到期时间。
+ * 同一组域名同时提交到多个节点时只有一个节点能拿到租约，其他节点挂到它的证书上，不会重复下单。节点处理任务前先获取租约，
+ * 只有没有租约或租约已过期时才能获取成功，每次换手令牌加一；持有期间由心跳定期延长。
+ * 节点宕机后租约自然过期，由其他节点的巡检接手；签发结果写库时同时比对节点和令牌，
+ * 已经失去租约的节点不会覆盖新持有者的结果。
+ * 到期时间按各节点的本地时钟计算，节点之间的时钟偏差需要远小于租约时长。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IssuanceLeases {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${certapp.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${certapp.cluster.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${certapp.cluster.heartbeat-seconds:20}")
+    private long heartbeatSeconds;
+
+    private final Map<Long, Lease> held = new ConcurrentHashMap<>();
+    private String nodeId;
+    private ScheduledExecutorService heartbeats;
+
+    /**
+     * 本节点持有的租约；valid-until 只在心跳成功时延长，连不上数据库超过租约时长后本节点自行视为失效
+     */
+    private static final class Lease {
+        final String key;
+        final long token;
+        volatile long validUntil;
+
+        Lease(String key, long token, long validUntil) {
+            this.key = key;
+            this.token = token;
+            this.validUntil = validUntil;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate.execute("create table if not exists issuance_leases ("
+            + "lease_key text primary key, certificate_id bigint not null, owner varchar(255) not null, "
+            + "token bigint not null, expires_at bigint not null)");
+        jdbcTemplate.execute("create index if not exists idx_issuance_leases_certificate_id "
+            + "on issuance_leases (certificate_id)");
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId.trim();
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        log.info("集群节点: {}, 租约{}秒, 心跳间隔{}秒", nodeId, leaseSeconds, heartbeatSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * 域名集合的租约键：小写、去重、排序后用逗号连接
+     */
+    public static String key(Collection<String> domains) {
+        return domains.stream()
+            .map(domain -> domain.trim().toLowerCase(Locale.ROOT))
+            .distinct()
+            .sorted()
+            .collect(Collectors.joining(","));
+    }
+
+    /**
+     * 以证书的身份获取这组域名的租约，成功时返回防护令牌；其他节点或其他证书持有未过期的租约时返回 empty。
+     * 本节点已持有时直接返回当前令牌
+     */
+    public OptionalLong acquire(Long certificateId, Collection<String> domains) {
+        Lease current = held.get(certificateId);
+        if (current != null && current.validUntil > System.currentTimeMillis()) {
+            return OptionalLong.of(current.token);
+        }
+        String key = key(domains);
+        long now = System.currentTimeMillis();
+        long expiresAt = now + TimeUnit.SECONDS.toMillis(leaseSeconds);
+        Long token = transactionTemplate.execute(status -> {
+            // 冲突时只在旧租约已过期的情况下改写，更新条件不满足时影响行数为 0
+            int updated = jdbcTemplate.update("insert into issuance_leases "
+                    + "(lease_key, certificate_id, owner, token, expires_at) values (?, ?, ?, 1, ?) "
+                    + "on conflict (lease_key) do update set certificate_id = excluded.certificate_id, "
+                    + "owner = excluded.owner, token = issuance_leases.token + 1, expires_at = excluded.expires_at "
+                    + "where issuance_leases.expires_at < ?",
+                key, certificateId, nodeId, expiresAt, now);
+            if (updated == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject("select token from issuance_leases where lease_key = ?",
+                Long.class, key);
+        });
+        if (token == null) {
+            return OptionalLong.empty();
+        }
+        held.put(certificateId, new Lease(key, token, expiresAt));
+        log.debug("已获取租约: id={}, key={}, token={}", certificateId, key, token);
+        return OptionalLong.of(token);
+    }
+
+    /**
+     * 正在处理这组域名的证书ID（任一节点持有未过期的租约），没有时返回 empty
+     */
+    public Optional<Long> holder(Collection<String> domains) {
+        List<Long> ids = jdbcTemplate.queryForList(
+            "select certificate_id from issuance_leases where lease_key = ? and expires_at >= ?",
+            Long.class, key(domains), System.currentTimeMillis());
+        return ids.stream().findFirst();
+    }
+
+    /**
+     * 本节点是否仍持有证书的租约
+     */
+    public boolean isHeld(Long certificateId) {
+        Lease lease = held.get(certificateId);
+        return lease != null && lease.validUntil > System.currentTimeMillis();
+    }
+
+    /**
+     * 当前持有的防护令牌，没有租约时返回 empty
+     */
+    public OptionalLong token(Long certificateId) {
+        Lease lease = held.get(certificateId);
+        return lease != null && lease.validUntil > System.currentTimeMillis()
+            ? OptionalLong.of(lease.token) : OptionalLong.empty();
+    }
+
+    /**
+     * 任务结束：停止心跳并删除租约，同一组域名可以立即重新申请。
+     * 只删除本节点仍持有的那一行；写后队列中的最终状态晚一点落库也没关系，巡检只接手长时间没有更新的记录
+     */
+    public void release(Long certificateId) {
+        Lease lease = held.remove(certificateId);
+        if (lease == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("delete from issuance_leases where lease_key = ? and owner = ? and token = ?",
+                lease.key, nodeId, lease.token);
+        } catch (RuntimeException e) {
+            // 删除失败时租约到期后自然失效
+            log.warn("释放租约失败: id={}, key={}", certificateId, lease.key, e);
+        }
+    }
+
+    public int getHeldCount() {
+        return held.size();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 处于给定状态、但没有有效租约的证书ID。updated-before 之后更新过的不算，
+     * 刚入队的任务在创建它的节点拿到租约之前也会短暂处于这种状态
+     */
+    public List<Long> findOrphaned(Collection<String> statuses, LocalDateTime updatedBefore, int limit) {
+        if (statuses.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String placeholders = statuses.stream().map(status -> "?").collect(Collectors.joining(", "));
+        List<Object> args = new ArrayList<>(statuses);
+        args.add(System.currentTimeMillis());
+        args.add(Timestamp.valueOf(updatedBefore));
+        args.add(limit);
+        return jdbcTemplate.queryForList("select c.id from certificates c "
+                + "where c.status in (" + placeholders + ") and not exists (select 1 from issuance_leases l "
+                + "where l.certificate_id = c.id and l.expires_at >= ?) "
+                + "and c.updated_at < ? order by c.updated_at limit ?",
+            Long.class, args.toArray());
+    }
+
+    /**
+     * 批量延长本节点持有的租约；某一行更新失败说明租约已经过期并被其他节点接管
+     */
+    private void heartbeat() {
+        List<Map.Entry<Long, Lease>> leases = new ArrayList<>(held.entrySet());
+        if (leases.isEmpty()) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds);
+        try {
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "update issuance_leases set expires_at = ? where lease_key = ? and owner = ? and token = ?",
+                leases.stream()
+                    .map(entry -> new Object[]{expiresAt, entry.getValue().key, nodeId, entry.getValue().token})
+                    .collect(Collectors.toList())));
+            for (int i = 0; i < leases.size(); i++) {
+                Map.Entry<Long, Lease> entry = leases.get(i);
+                if (counts != null && counts[i] == 0) {
+                    held.remove(entry.getKey(), entry.getValue());
+                    log.warn("租约已被其他节点接管: id={}, token={}", entry.getKey(), entry.getValue().token);
+                } else {
+                    entry.getValue().validUntil = expiresAt;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("租约心跳失败", e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        // 同一台机器上可以跑多个实例，再加上进程号和随机后缀
+        return host + "-" + ManagementFactory.getRuntimeMXBean().getPid()
+            + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x10000));
+    }
+}
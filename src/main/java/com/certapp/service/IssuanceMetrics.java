@@ -0,0 +1,131 @@
+package com.certapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.shredzone.acme4j.Problem;
+import org.shredzone.acme4j.exception.AcmeException;
+import org.shredzone.acme4j.exception.AcmeNetworkException;
+import org.shredzone.acme4j.exception.AcmeServerException;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 证书签发过程的指标
+ * certapp.issuance.phase 按阶段（account/order/challenge/finalize/store/install）和结果记录耗时，
+ * certapp.issuance.duration 记录一次申请的总耗时，certapp.acme.errors 按ACME问题类型计数。
+ */
+@Component
+public class IssuanceMetrics {
+    public static final String ACCOUNT = "account";
+    public static final String ORDER = "order";
+    public static final String CHALLENGE = "challenge";
+    public static final String FINALIZE = "finalize";
+    public static final String STORE = "store";
+    public static final String INSTALL = "install";
+
+    private static final String ACME_ERROR_PREFIX = "urn:ietf:params:acme:error:";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public IssuanceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("certapp.issuance.in_flight", inFlight, AtomicInteger::get)
+            .description("正在进行的ACME订单数")
+            .register(registry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * 开始一次完整的证书申请，future 结束时记录总耗时并减少进行中的订单数
+     */
+    public <T> CompletableFuture<T> trackOrder(Timer.Sample sample, CompletableFuture<T> future) {
+        inFlight.incrementAndGet();
+        return future.whenComplete((result, ex) -> {
+            inFlight.decrementAndGet();
+            sample.stop(registry.timer("certapp.issuance.duration", "outcome", outcome(ex)));
+        });
+    }
+
+    /**
+     * 记录同步阶段的耗时，失败时同时统计ACME错误
+     */
+    public void record(String phase, Timer.Sample sample, Throwable error) {
+        sample.stop(registry.timer("certapp.issuance.phase", "phase", phase, "outcome", outcome(error)));
+        if (error != null) {
+            acmeError(phase, error);
+        }
+    }
+
+    /**
+     * 异步阶段在 future 结束时记录耗时
+     */
+    public <T> CompletableFuture<T> recordWhenComplete(String phase, Timer.Sample sample, CompletableFuture<T> future) {
+        return future.whenComplete((result, ex) -> record(phase, sample, ex));
+    }
+
+    private void acmeError(String phase, Throwable error) {
+        String type = errorType(unwrap(error));
+        if (type != null) {
+            Counter.builder("certapp.acme.errors")
+                .tag("phase", phase)
+                .tag("type", type)
+                .register(registry)
+                .increment();
+        }
+    }
+
+    /**
+     * ACME错误的类型：服务端问题取RFC 8555的错误类型（如 rateLimited、unauthorized），
+     * 其余按网络错误、超时区分；与ACME无关的异常返回 null，不计入
+     */
+    static String errorType(Throwable error) {
+        if (error instanceof AcmeServerException) {
+            return problemType(((AcmeServerException) error).getType());
+        }
+        if (error instanceof AcmePoller.InvalidResourceException) {
+            Problem problem = ((AcmePoller.InvalidResourceException) error).getProblem();
+            return problem != null ? problemType(problem.getType()) : "invalid";
+        }
+        if (error instanceof AcmeNetworkException) {
+            return "network";
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof AcmeException) {
+            return "other";
+        }
+        return null;
+    }
+
+    private static String problemType(URI type) {
+        if (type == null) {
+            return "unknown";
+        }
+        String value = type.toString();
+        return value.startsWith(ACME_ERROR_PREFIX) ? value.substring(ACME_ERROR_PREFIX.length()) : value;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static String outcome(Throwable error) {
+        return error == null ? "success" : "failure";
+    }
+}
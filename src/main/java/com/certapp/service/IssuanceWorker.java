@@ -0,0 +1,273 @@
+package com.certapp.service;
+
+import com.certapp.model.Certificate;
+import com.certapp.model.CertificateStatus;
+import com.certapp.model.CertificateStatusEvent;
+import com.certapp.repository.CertificateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台签发任务调度：HTTP线程只负责入队，ACME流程在有界线程池中执行，
+ * 每次状态变更都是一个独立的短事务，不会长时间占用数据库连接。
+ * 多个节点共用同一数据库时，每个任务先获取 IssuanceLeases 中按域名集合加的租约，同一组域名同一时间只有一个节点在签发。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IssuanceWorker {
+    private final CertificateRepository certificateRepository;
+    // 注入延迟代理：fast-startup 下 ACME 账户在第一次签发时才初始化
+    @Lazy
+    private final LetsEncryptService letsEncryptService;
+    private final IssuanceAdmission issuanceAdmission;
+    private final StatusWriteBehind statusWriteBehind;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IssuanceLeases issuanceLeases;
+
+    @Value("${certapp.cluster.sweep-seconds:30}")
+    private long sweepSeconds;
+
+    @Value("${certapp.cluster.max-leases:1000}")
+    private int maxLeases;
+
+    @Value("${certapp.cluster.lease-seconds:60}")
+    private long leaseSeconds;
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "issuance-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 提交签发任务，经准入控制排队后执行，返回预计的排队时间；排队任务过多时抛出 RejectedExecutionException
+     */
+    public Duration submit(Certificate certificate) {
+        if (issuanceLeases.acquire(certificate.getId(), domainsOf(certificate)).isEmpty()) {
+            log.info("签发任务已由其他节点处理: id={}, domain={}", certificate.getId(), certificate.getName());
+            return Duration.ZERO;
+        }
+        return enqueue(certificate, false);
+    }
+
+    /**
+     * 续期：在原记录上重新走一遍签发流程；各节点的续期调度都会到期触发，只有拿到租约的节点执行
+     */
+    public void renew(Certificate certificate) {
+        if (issuanceLeases.acquire(certificate.getId(), domainsOf(certificate)).isEmpty()) {
+            log.info("续期任务已由其他节点处理: id={}, domain={}", certificate.getId(), certificate.getName());
+            return;
+        }
+        updateStatus(certificate.getId(), CertificateStatus.QUEUED, "等待续期");
+        enqueue(certificate, true);
+    }
+
+    private Duration enqueue(Certificate certificate, boolean renewal) {
+        Long id = certificate.getId();
+        List<String> domains = domainsOf(certificate);
+        IssuanceAdmission.Ticket ticket;
+        try {
+            ticket = issuanceAdmission.submit(certificate.getEmail(), domains, renewal, admitted -> process(id, admitted));
+        } catch (RuntimeException e) {
+            issuanceLeases.release(id);
+            throw e;
+        }
+        log.debug("签发任务已入队: id={}, domains={}, 预计等待{}秒", id, domains, ticket.getEstimatedWait().toSeconds());
+        return ticket.getEstimatedWait();
+    }
+
+    /**
+     * 启动后定期巡检：没有有效租约的未完成任务（本节点重启前或其他节点宕机时留下的）由拿到租约的节点接手
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeper() {
+        sweeper.schedule(this::sweep, 0, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    private void sweep() {
+        try {
+            resumeUnfinished();
+        } catch (RuntimeException e) {
+            log.error("巡检未完成的签发任务失败", e);
+        }
+        // 加上随机抖动，避免多个节点同时巡检、争抢同一批任务
+        long delay = TimeUnit.SECONDS.toMillis(sweepSeconds);
+        delay += ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        sweeper.schedule(this::sweep, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 把无人处理的未完成任务重新入队，本节点最多同时持有 max-leases 个租约，其余留给其他节点
+     */
+    void resumeUnfinished() {
+        List<Long> orphaned = issuanceLeases.findOrphaned(List.of(
+                CertificateStatus.QUEUED.name(),
+                CertificateStatus.AUTHORIZING.name(),
+                CertificateStatus.FINALIZING.name()),
+            LocalDateTime.now().minusSeconds(leaseSeconds), maxLeases - issuanceLeases.getHeldCount());
+        for (Long id : orphaned) {
+            Certificate certificate = certificateRepository.findById(id).orElse(null);
+            if (certificate == null) {
+                continue;
+            }
+            List<String> domains = domainsOf(certificate);
+            if (issuanceLeases.acquire(id, domains).isEmpty()) {
+                // 同一组域名已由另一张证书在签发（节点在登记租约前宕机留下的记录），不再重复下单
+                issuanceLeases.holder(domains).filter(holder -> !holder.equals(id)).ifPresent(holder ->
+                    updateStatus(id, CertificateStatus.FAILED, "同一组域名已由证书 " + holder + " 签发"));
+                continue;
+            }
+            log.info("恢复未完成的签发任务: id={}, domain={}", id, certificate.getName());
+            try {
+                enqueue(certificate, false);
+            } catch (RejectedExecutionException e) {
+                log.warn("签发队列已满，剩余任务留到下次巡检: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 工作线程只负责创建订单和触发验证，等待阶段交给 AcmePoller，线程随即释放
+     */
+    private void process(Long id, IssuanceAdmission.Ticket ticket) {
+        List<String> domains = ticket.getDomains();
+        String domain = String.join(",", domains);
+        if (!issuanceLeases.isHeld(id)) {
+            log.warn("租约已失效，放弃签发: id={}, domain={}", id, domain);
+            return;
+        }
+        try {
+            updateStatus(id, CertificateStatus.AUTHORIZING, "正在进行域名验证");
+            letsEncryptService.requestCertificate(domains, status -> updateStatus(id, status, describe(status)))
+                .whenComplete((issued, ex) -> {
+                    if (ex == null) {
+                        if (recordIssued(id, domains, issued)) {
+                            updateStatus(id, CertificateStatus.ISSUED, "Certificate generated by Let's Encrypt");
+                            log.info("证书签发完成: id={}, domain={}", id, domain);
+                        } else {
+                            log.warn("签发完成时租约已被其他节点接管，不记录结果: id={}, domain={}", id, domain);
+                        }
+                        issuanceLeases.release(id);
+                    } else {
+                        fail(id, domain, ticket, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                    }
+                });
+        } catch (Exception e) {
+            fail(id, domain, ticket, e);
+        }
+    }
+
+    /**
+     * 记录签发结果，本节点已经失去租约时返回 false
+     */
+    private boolean recordIssued(Long id, List<String> domains, X509Certificate issued) {
+        OptionalLong token = issuanceLeases.token(id);
+        if (token.isEmpty()) {
+            return false;
+        }
+        // SAN与申请的域名一致时保留申请时的顺序，保证第一个域名（文件名）在续期后不变
+        List<String> sans = subjectAlternativeNames(issued);
+        List<String> recorded = sans.isEmpty() || new HashSet<>(sans).equals(new HashSet<>(domains)) ? domains : sans;
+        return certificateRepository.updateIssued(id,
+            LocalDateTime.ofInstant(issued.getNotAfter().toInstant(), ZoneId.systemDefault()),
+            issued.getSerialNumber().toString(16),
+            ArtifactStore.fingerprint(issued),
+            issued.getIssuerX500Principal().getName(),
+            String.join(",", recorded),
+            LocalDateTime.now(),
+            issuanceLeases.getNodeId(),
+            token.getAsLong()) > 0;
+    }
+
+    /**
+     * 读取证书中的 DNS 类型 SAN
+     */
+    static List<String> subjectAlternativeNames(X509Certificate certificate) {
+        List<String> names = new ArrayList<>();
+        try {
+            Collection<List<?>> entries = certificate.getSubjectAlternativeNames();
+            if (entries != null) {
+                for (List<?> entry : entries) {
+                    if (entry.size() > 1 && Integer.valueOf(2).equals(entry.get(0))) {
+                        names.add(String.valueOf(entry.get(1)));
+                    }
+                }
+            }
+        } catch (CertificateParsingException e) {
+            log.warn("无法解析证书SAN: {}", e.getMessage());
+        }
+        return names;
+    }
+
+    private void fail(Long id, String domain, IssuanceAdmission.Ticket ticket, Throwable e) {
+        // 触发CA速率限制时不算失败，任务回到队列等待令牌桶恢复
+        if (IssuanceAdmission.isRateLimited(e)) {
+            updateStatus(id, CertificateStatus.QUEUED, "触发CA速率限制，稍后自动重试: " + e.getMessage());
+            issuanceAdmission.requeueRateLimited(ticket, e);
+            return;
+        }
+        log.error("证书签发失败: id=" + id + ", domain=" + domain, e);
+        if (issuanceLeases.isHeld(id)) {
+            updateStatus(id, CertificateStatus.FAILED, "证书申请失败: " + e.getMessage());
+        }
+        issuanceLeases.release(id);
+    }
+
+    /**
+     * 旧数据没有 domains 字段，此时只签发 name 对应的单个域名
+     */
+    static List<String> domainsOf(Certificate certificate) {
+        if (certificate.getDomains() == null || certificate.getDomains().isBlank()) {
+            return List.of(certificate.getName());
+        }
+        return Arrays.asList(certificate.getDomains().split(","));
+    }
+
+    private void updateStatus(Long id, CertificateStatus status, String description) {
+        statusWriteBehind.update(id, status, description);
+        eventPublisher.publishEvent(new CertificateStatusEvent(id, status, description, LocalDateTime.now()));
+    }
+
+    private static String describe(CertificateStatus status) {
+        switch (status) {
+            case AUTHORIZING:
+                return "正在进行域名验证";
+            case FINALIZING:
+                return "域名验证通过，正在签发证书";
+            default:
+                return status.name();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.certapp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 基于数据库的验证响应存储
+ * 负载均衡后的多个节点共用同一个库时，任何节点都能应答其他节点创建的验证。
+ * 响应以字节形式保存，查询结果直接输出；过期行在写入时顺带清理。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "certapp.challenge.store", havingValue = "jdbc")
+public class JdbcChallengeStore implements ChallengeStore {
+    private final JdbcTemplate jdbcTemplate;
+    private final ChallengeStats stats = new ChallengeStats();
+
+    @PostConstruct
+    public void createTable() {
+        jdbcTemplate.execute("create table if not exists acme_challenges ("
+            + "token varchar(255) primary key, body blob not null, expires_at bigint not null)");
+        jdbcTemplate.execute("create index if not exists idx_acme_challenges_expires_at on acme_challenges (expires_at)");
+    }
+
+    @Override
+    public void put(String token, String authorization, Duration ttl) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("delete from acme_challenges where expires_at < ?", now);
+        jdbcTemplate.update("insert or replace into acme_challenges (token, body, expires_at) values (?, ?, ?)",
+            token, authorization.getBytes(StandardCharsets.US_ASCII), now + ttl.toMillis());
+    }
+
+    @Override
+    public byte[] get(String token) {
+        long start = System.nanoTime();
+        List<byte[]> rows = jdbcTemplate.query(
+            "select body from acme_challenges where token = ? and expires_at >= ?",
+            (rs, rowNum) -> rs.getBytes(1), token, System.currentTimeMillis());
+        byte[] body = rows.isEmpty() ? null : rows.get(0);
+        stats.record(body != null, System.nanoTime() - start);
+        return body;
+    }
+
+    @Override
+    public void remove(String token) {
+        jdbcTemplate.update("delete from acme_challenges where token = ?", token);
+    }
+
+    @Override
+    public ChallengeStats.Snapshot stats() {
+        Integer size = jdbcTemplate.queryForObject(
+            "select count(*) from acme_challenges where expires_at >= ?", Integer.class, System.currentTimeMillis());
+        return stats.snapshot(size == null ? 0 : size);
+    }
+}
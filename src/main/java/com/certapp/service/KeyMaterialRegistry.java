@@ -0,0 +1,263 @@
+package com.certapp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.shredzone.acme4j.util.KeyPairUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * 已解析密钥材料的注册表
+ * 密钥库和PEM私钥只在首次使用或文件内容变化时解析一次，之后直接提供 KeyStore/证书链/私钥对象。
+ * 所在目录由 WatchService 监听，收到事件后先比较文件的SHA-256，只有内容确实变化的条目才重新解析，
+ * 并通知监听者重新安装该文件对应的域名。
+ */
+@Slf4j
+@Component
+public class KeyMaterialRegistry {
+
+    /**
+     * 一个密钥库中的密钥材料，内容不可变，文件变化时整体替换
+     */
+    public static class KeyMaterial {
+        public final Path source;
+        public final String checksum;
+        public final KeyStore keyStore;
+        public final String password;
+        public final PrivateKey privateKey;
+        public final X509Certificate[] chain;
+
+        KeyMaterial(Path source, String checksum, KeyStore keyStore, String password,
+                    PrivateKey privateKey, X509Certificate[] chain) {
+            this.source = source;
+            this.checksum = checksum;
+            this.keyStore = keyStore;
+            this.password = password;
+            this.privateKey = privateKey;
+            this.chain = chain;
+        }
+    }
+
+    private static class Entry {
+        final String password;
+        final Set<String> hosts = ConcurrentHashMap.newKeySet();
+        volatile String checksum;
+        volatile Object parsed;
+
+        Entry(String password) {
+            this.password = password;
+        }
+    }
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, KeyMaterial> byHost = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedDirs = new ConcurrentHashMap<>();
+    private final Collection<BiConsumer<Set<String>, KeyMaterial>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+
+    @PostConstruct
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread watcher = new Thread(this::pollEvents, "key-material-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * 密钥库文件内容变化后回调，参数为受影响的域名和新的密钥材料
+     */
+    public void addListener(BiConsumer<Set<String>, KeyMaterial> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 把一组域名绑定到密钥库文件，返回解析好的密钥材料
+     */
+    public KeyMaterial register(Collection<String> hosts, Path keystore, String password) {
+        Path path = keystore.toAbsolutePath().normalize();
+        Entry entry = entries.computeIfAbsent(path, p -> new Entry(password));
+        KeyMaterial material = (KeyMaterial) load(path, entry);
+        for (String host : hosts) {
+            String name = host.toLowerCase(Locale.ROOT);
+            KeyMaterial previous = byHost.put(name, material);
+            if (previous != null && !previous.source.equals(path)) {
+                release(previous.source, name);
+            }
+            entry.hosts.add(name);
+        }
+        return material;
+    }
+
+    public KeyMaterial get(String host) {
+        return byHost.get(host.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 读取密钥库（不绑定域名），文件未变化时返回缓存的对象
+     */
+    public KeyStore keyStore(Path keystore, String password) {
+        Path path = keystore.toAbsolutePath().normalize();
+        return ((KeyMaterial) load(path, entries.computeIfAbsent(path, p -> new Entry(password)))).keyStore;
+    }
+
+    /**
+     * 读取PEM格式的密钥对，文件未变化时返回缓存的对象
+     */
+    public KeyPair keyPair(Path pemFile) {
+        Path path = pemFile.toAbsolutePath().normalize();
+        return (KeyPair) load(path, entries.computeIfAbsent(path, p -> new Entry(null)));
+    }
+
+    private Object load(Path path, Entry entry) {
+        Object parsed = entry.parsed;
+        if (parsed != null) {
+            return parsed;
+        }
+        synchronized (entry) {
+            if (entry.parsed == null) {
+                reload(path, entry);
+                watch(path.getParent());
+            }
+            return entry.parsed;
+        }
+    }
+
+    /**
+     * 重新读取文件，校验和未变化时返回 false
+     */
+    private boolean reload(Path path, Entry entry) {
+        try {
+            byte[] content = Files.readAllBytes(path);
+            String checksum = ArtifactStore.sha256Hex(content);
+            if (checksum.equals(entry.checksum)) {
+                return false;
+            }
+            entry.parsed = entry.password == null
+                ? KeyPairUtils.readKeyPair(new StringReader(new String(content, StandardCharsets.US_ASCII)))
+                : parseKeyStore(path, checksum, content, entry.password);
+            entry.checksum = checksum;
+            log.debug("已加载密钥材料: {}", path);
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException("无法加载密钥材料: " + path, e);
+        }
+    }
+
+    private void release(Path path, String host) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.hosts.remove(host) && entry.hosts.isEmpty()) {
+            entries.remove(path, entry);
+            Path dir = path.getParent();
+            if (entries.keySet().stream().noneMatch(p -> p.getParent().equals(dir))) {
+                WatchKey key = watchedDirs.remove(dir);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    private void watch(Path dir) {
+        watchedDirs.computeIfAbsent(dir, d -> {
+            try {
+                return d.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                log.warn("无法监听目录，文件变化不会自动重新加载: {}", d, e);
+                return null;
+            }
+        });
+    }
+
+    private void pollEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path) {
+                        onChanged(dir.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onChanged(Path path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            return;
+        }
+        try {
+            boolean changed;
+            synchronized (entry) {
+                changed = reload(path, entry);
+            }
+            if (!changed || !(entry.parsed instanceof KeyMaterial) || entry.hosts.isEmpty()) {
+                return;
+            }
+            KeyMaterial material = (KeyMaterial) entry.parsed;
+            Set<String> hosts = Set.copyOf(entry.hosts);
+            hosts.forEach(host -> byHost.put(host, material));
+            log.info("密钥库已变化，重新安装: file={}, hosts={}", path, hosts);
+            listeners.forEach(listener -> listener.accept(hosts, material));
+        } catch (RuntimeException e) {
+            // 文件可能正在写入，等待下一次事件
+            log.warn("重新加载密钥材料失败: {}", path, e);
+        }
+    }
+
+    private static KeyMaterial parseKeyStore(Path path, String checksum, byte[] content, String password)
+            throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(content), password.toCharArray());
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            String alias = aliases.nextElement();
+            if (keyStore.isKeyEntry(alias)) {
+                Key key = keyStore.getKey(alias, password.toCharArray());
+                Certificate[] chain = keyStore.getCertificateChain(alias);
+                return new KeyMaterial(path, checksum, keyStore, password, (PrivateKey) key,
+                    Arrays.copyOf(chain, chain.length, X509Certificate[].class));
+            }
+        }
+        throw new GeneralSecurityException("密钥库中没有私钥: " + path);
+    }
+}
@@ -0,0 +1,196 @@
+package com.certapp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预生成密钥对池
+ * 后台线程把池子补充到高水位，取用后低于低水位时再次触发补充；
+ * 池子为空或请求了未预生成的算法时，退回到同步生成并计为一次未命中。
+ */
+@Slf4j
+@Component
+public class KeyPairPool {
+
+    public enum Algorithm {
+        RSA_2048("RSA", new RSAKeyGenParameterSpec(2048, RSAKeyGenParameterSpec.F4)),
+        RSA_3072("RSA", new RSAKeyGenParameterSpec(3072, RSAKeyGenParameterSpec.F4)),
+        EC_P256("EC", new ECGenParameterSpec("secp256r1")),
+        EC_P384("EC", new ECGenParameterSpec("secp384r1"));
+
+        private final String keyAlgorithm;
+        private final AlgorithmParameterSpec spec;
+
+        Algorithm(String keyAlgorithm, AlgorithmParameterSpec spec) {
+            this.keyAlgorithm = keyAlgorithm;
+            this.spec = spec;
+        }
+
+        public KeyPair generate() {
+            try {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+                generator.initialize(spec);
+                return generator.generateKeyPair();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("无法生成密钥对: " + this, e);
+            }
+        }
+    }
+
+    @Value("${certapp.keys.algorithm:RSA_2048}")
+    private Algorithm defaultAlgorithm;
+
+    @Value("${certapp.keys.pooled-algorithms:}")
+    private List<Algorithm> pooledAlgorithms;
+
+    @Value("${certapp.keys.low-watermark:4}")
+    private int lowWatermark;
+
+    @Value("${certapp.keys.high-watermark:16}")
+    private int highWatermark;
+
+    private final Map<Algorithm, Pool> pools = new EnumMap<>(Algorithm.class);
+    private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "keypair-refill");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        pools.put(defaultAlgorithm, new Pool(defaultAlgorithm));
+        for (Algorithm algorithm : pooledAlgorithms) {
+            pools.computeIfAbsent(algorithm, Pool::new);
+        }
+        // 启动时异步填充，不拖慢应用启动
+        pools.values().forEach(this::scheduleRefill);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    public Algorithm getDefaultAlgorithm() {
+        return defaultAlgorithm;
+    }
+
+    /**
+     * 取出一个默认算法的密钥对
+     */
+    public KeyPair take() {
+        return take(defaultAlgorithm);
+    }
+
+    public KeyPair take(Algorithm algorithm) {
+        Pool pool = pools.get(algorithm);
+        if (pool == null) {
+            return algorithm.generate();
+        }
+        KeyPair keyPair = pool.queue.poll();
+        if (keyPair != null) {
+            pool.hits.incrementAndGet();
+        } else {
+            pool.misses.incrementAndGet();
+            keyPair = algorithm.generate();
+        }
+        if (pool.queue.size() <= lowWatermark) {
+            scheduleRefill(pool);
+        }
+        return keyPair;
+    }
+
+    public Map<Algorithm, Stats> stats() {
+        Map<Algorithm, Stats> result = new EnumMap<>(Algorithm.class);
+        pools.forEach((algorithm, pool) -> result.put(algorithm, pool.snapshot()));
+        return result;
+    }
+
+    private void scheduleRefill(Pool pool) {
+        if (pool.refilling.compareAndSet(false, true)) {
+            refillExecutor.execute(() -> refill(pool));
+        }
+    }
+
+    private void refill(Pool pool) {
+        try {
+            long start = System.nanoTime();
+            int generated = 0;
+            while (pool.queue.size() < highWatermark && !Thread.currentThread().isInterrupted()) {
+                if (!pool.queue.offer(pool.algorithm.generate())) {
+                    break;
+                }
+                generated++;
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.generated.addAndGet(generated);
+            pool.generateNanos.addAndGet(elapsed);
+            log.debug("密钥池补充完成: algorithm={}, generated={}, {}ms",
+                pool.algorithm, generated, elapsed / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("密钥池补充失败: " + pool.algorithm, e);
+        } finally {
+            pool.refilling.set(false);
+        }
+    }
+
+    /**
+     * 密钥池统计：当前数量、命中/未命中次数、后台生成数量及每秒生成速率
+     */
+    public static class Stats {
+        public final int available;
+        public final long hits;
+        public final long misses;
+        public final long generated;
+        public final double refillPerSecond;
+
+        Stats(int available, long hits, long misses, long generated, double refillPerSecond) {
+            this.available = available;
+            this.hits = hits;
+            this.misses = misses;
+            this.generated = generated;
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    private class Pool {
+        final Algorithm algorithm;
+        final BlockingQueue<KeyPair> queue = new ArrayBlockingQueue<>(Math.max(1, highWatermark));
+        final AtomicBoolean refilling = new AtomicBoolean();
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong generated = new AtomicLong();
+        final AtomicLong generateNanos = new AtomicLong();
+
+        Pool(Algorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        Stats snapshot() {
+            long nanos = generateNanos.get();
+            long count = generated.get();
+            double rate = nanos == 0 ? 0 : count * 1_000_000_000.0 / nanos;
+            return new Stats(queue.size(), hits.get(), misses.get(), count, rate);
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package com.certapp.service;
 
+import com.certapp.model.CertificateStatus;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.shredzone.acme4j.*;
 import org.shredzone.acme4j.challenge.Http01Challenge;
 import org.shredzone.acme4j.exception.AcmeException;
 import org.shredzone.acme4j.util.CSRBuilder;
 import org.shredzone.acme4j.util.KeyPairUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
-import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 import com.certapp.config.DynamicSSLConfig;
 
@@ -19,149 +27,168 @@ import com.certapp.config.DynamicSSLConfig;
 @Service
 @RequiredArgsConstructor
 public class LetsEncryptService {
-    private static final String LETS_ENCRYPT_URL = "acme://letsencrypt.org";
-    private static final File USER_KEY_FILE = new File("user.key");
     private static final File DOMAIN_KEY_FILE = new File("domain.key");
-    private static final File DOMAIN_CERT_FILE = new File("domain.crt");
+    private static final File CERTIFICATES_DIR = new File("certificates");
     
     private final DynamicSSLConfig dynamicSSLConfig;
+    private final AcmePoller acmePoller;
+    private final AcmeAccountContext acmeAccountContext;
+    private final KeyPairPool keyPairPool;
+    private final ChallengeStore challengeStore;
+    private final ArtifactStore artifactStore;
+    private final KeyMaterialRegistry keyMaterialRegistry;
+    private final IssuanceMetrics issuanceMetrics;
+    private final ExecutorService issuanceCompletionExecutor;
     
-    public void requestCertificate(String domain) throws Exception {
-        log.info("开始申请Let's Encrypt证书: {}", domain);
-        
-        KeyPair userKeyPair = loadOrCreateUserKeyPair();
-        log.debug("用户密钥对加载完成");
-        
-        Session session = new Session(LETS_ENCRYPT_URL);
-        Account account = createOrLoadAccount(session, userKeyPair);
-        log.debug("ACME账户创建/加载完成");
-        
-        // 3. 创建域名密钥对
-        KeyPair domainKeyPair = loadOrCreateDomainKeyPair();
-        
-        // 4. 创建证书订单
-        Order order = account.newOrder()
-            .domains(domain)
-            .create();
-        
-        // 5. 处理域名验证挑战
-        for (Authorization auth : order.getAuthorizations()) {
-            processHttpChallenge(auth);
-        }
-        
-        // 6. 生成CSR并完成订单
-        CSRBuilder csrBuilder = new CSRBuilder();
-        csrBuilder.addDomain(domain);
-        csrBuilder.sign(domainKeyPair);
-        
-        order.execute(csrBuilder.getEncoded());
-        
-        // 7. 等待订单完成
-        while (order.getStatus() != Status.VALID) {
-            Thread.sleep(3000L);
-            order.update();
+    @Value("${certapp.keys.per-certificate:false}")
+    private boolean perCertificateKey;
+    
+    @Value("${certapp.challenge.ttl-seconds:600}")
+    private long challengeTtlSeconds;
+    
+    /**
+     * 创建订单并触发域名验证后立即返回，后续的等待与签发由 AcmePoller 驱动
+     */
+    public CompletableFuture<X509Certificate> requestCertificate(List<String> domains, Consumer<CertificateStatus> progress) throws Exception {
+        log.info("开始申请Let's Encrypt证书: {}", domains);
+        Timer.Sample total = issuanceMetrics.start();
+        
+        // 1. 创建域名密钥对：独立密钥从预生成池中取出，签发成功后才写文件
+        KeyPair domainKeyPair = perCertificateKey ? keyPairPool.take() : loadOrCreateDomainKeyPair();
+        
+        // 2. 使用缓存的账户会话创建证书订单
+        Timer.Sample phase = issuanceMetrics.start();
+        Order order;
+        try {
+            order = acmeAccountContext.execute(login -> login.getAccount().newOrder()
+                .domains(domains)
+                .create());
+            issuanceMetrics.record(IssuanceMetrics.ORDER, phase, null);
+        } catch (AcmeException | RuntimeException e) {
+            issuanceMetrics.record(IssuanceMetrics.ORDER, phase, e);
+            throw e;
         }
         
-        // 8. 获取证书并保存
-        Certificate certificate = order.getCertificate();
-        try (FileWriter fw = new FileWriter(DOMAIN_CERT_FILE)) {
-            certificate.writeCertificate(fw);
+        // 3. 同时触发所有域名的验证挑战，并一起等待，总耗时取决于最慢的那个
+        Timer.Sample challengePhase = issuanceMetrics.start();
+        CompletableFuture<?>[] challenges = order.getAuthorizations().stream()
+            .map(this::processHttpChallenge)
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture<Void> authorized =
+            issuanceMetrics.recordWhenComplete(IssuanceMetrics.CHALLENGE, challengePhase, CompletableFuture.allOf(challenges));
+        
+        // 4. 生成CSR并完成订单，等待订单完成后获取证书并保存；
+        //    轮询future在 acme-poller 线程上完成，后续的网络请求和文件写入切到 issuanceCompletionExecutor
+        return issuanceMetrics.trackOrder(total, authorized
+            .thenComposeAsync(v -> issuanceMetrics.recordWhenComplete(IssuanceMetrics.FINALIZE, issuanceMetrics.start(),
+                finalizeOrder(order, domains, domainKeyPair, progress)), issuanceCompletionExecutor)
+            .thenApplyAsync(v -> saveCertificate(order, domains, domainKeyPair), issuanceCompletionExecutor));
+    }
+    
+    private CompletableFuture<Void> finalizeOrder(Order order, List<String> domains, KeyPair domainKeyPair,
+                                                  Consumer<CertificateStatus> progress) {
+        try {
+            progress.accept(CertificateStatus.FINALIZING);
+            CSRBuilder csrBuilder = new CSRBuilder();
+            csrBuilder.addDomains(domains);
+            csrBuilder.sign(domainKeyPair);
+            
+            order.execute(csrBuilder.getEncoded());
+            return acmePoller.awaitValid(order, order::getStatus, order::getError, "订单" + domains);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
         }
-        
-        // 导入到密钥库
-        importCertificateToKeystore(certificate, domainKeyPair);
-        
-        log.info("证书申请完成: {}", domain);
     }
     
-    private KeyPair loadOrCreateUserKeyPair() throws IOException {
-        if (USER_KEY_FILE.exists()) {
-            try (FileReader fr = new FileReader(USER_KEY_FILE)) {
-                return KeyPairUtils.readKeyPair(fr);
-            }
-        } else {
-            KeyPair keyPair = KeyPairUtils.createKeyPair(2048);
-            try (FileWriter fw = new FileWriter(USER_KEY_FILE)) {
-                KeyPairUtils.writeKeyPair(keyPair, fw);
+    private X509Certificate saveCertificate(Order order, List<String> domains, KeyPair domainKeyPair) {
+        Timer.Sample phase = issuanceMetrics.start();
+        String currentPhase = IssuanceMetrics.STORE;
+        try {
+            Certificate certificate = order.getCertificate();
+            
+            // 一次性生成各种导出格式，按指纹保存
+            String fingerprint = artifactStore.store(certificate.getCertificateChain(), domainKeyPair, domains);
+            if (perCertificateKey) {
+                writeCertificateKey(fingerprint, domainKeyPair);
             }
-            return keyPair;
+            KeyMaterialRegistry.KeyMaterial material = keyMaterialRegistry.register(domains,
+                artifactStore.path(fingerprint, ArtifactStore.Format.P12), artifactStore.getKeystorePassword());
+            issuanceMetrics.record(currentPhase, phase, null);
+            
+            // 按SNI为证书中的每个域名安装或替换HTTPS证书
+            phase = issuanceMetrics.start();
+            currentPhase = IssuanceMetrics.INSTALL;
+            dynamicSSLConfig.installCertificate(domains, material);
+            issuanceMetrics.record(currentPhase, phase, null);
+            
+            log.info("证书申请完成: {}", domains.get(0));
+            return certificate.getCertificate();
+        } catch (Exception e) {
+            issuanceMetrics.record(currentPhase, phase, e);
+            throw new CompletionException(e);
         }
     }
     
-    private KeyPair loadOrCreateDomainKeyPair() throws IOException {
+    /**
+     * 共用密钥模式下多个签发任务会并发调用，首次生成时只允许一个任务写文件；
+     * 先写临时文件再原子重命名，注册表读取时不会看到写了一半的密钥
+     */
+    private synchronized KeyPair loadOrCreateDomainKeyPair() throws IOException {
         if (DOMAIN_KEY_FILE.exists()) {
-            try (FileReader fr = new FileReader(DOMAIN_KEY_FILE)) {
-                return KeyPairUtils.readKeyPair(fr);
-            }
+            // 解析结果由注册表缓存，文件变化时才重新读取
+            return keyMaterialRegistry.keyPair(DOMAIN_KEY_FILE.toPath());
         } else {
-            KeyPair keyPair = KeyPairUtils.createKeyPair(2048);
-            try (FileWriter fw = new FileWriter(DOMAIN_KEY_FILE)) {
-                KeyPairUtils.writeKeyPair(keyPair, fw);
-            }
+            KeyPair keyPair = keyPairPool.take();
+            writeKeyPair(DOMAIN_KEY_FILE, keyPair);
             return keyPair;
         }
     }
     
-    private Account createOrLoadAccount(Session session, KeyPair keyPair) throws AcmeException {
-        AccountBuilder accountBuilder = new AccountBuilder()
-            .agreeToTermsOfService()
-            .useKeyPair(keyPair);
-        return accountBuilder.create(session);
+    /**
+     * 独立密钥模式下，签发成功后把密钥按证书指纹保存在 certificates 目录。
+     * 文件名不取申请的域名：域名来自用户输入，而且订单创建时CA还没有校验过
+     */
+    private void writeCertificateKey(String fingerprint, KeyPair keyPair) throws IOException {
+        CERTIFICATES_DIR.mkdirs();
+        writeKeyPair(new File(CERTIFICATES_DIR, fingerprint + ".key"), keyPair);
+    }
+    
+    private static void writeKeyPair(File file, KeyPair keyPair) throws IOException {
+        StringWriter pem = new StringWriter();
+        KeyPairUtils.writeKeyPair(keyPair, pem);
+        ArtifactStore.writeAtomically(file.toPath().toAbsolutePath(), pem.toString().getBytes(StandardCharsets.US_ASCII));
     }
     
-    private void processHttpChallenge(Authorization auth) throws Exception {
+    private CompletableFuture<Void> processHttpChallenge(Authorization auth) {
+        if (auth.getStatus() == Status.VALID) {
+            // 近期已验证过的授权可以直接复用
+            return CompletableFuture.completedFuture(null);
+        }
+        
         Http01Challenge challenge = auth.findChallenge(Http01Challenge.class);
         if (challenge == null) {
             log.error("找不到HTTP验证挑战");
-            throw new Exception("无法找到HTTP验证挑战");
+            return CompletableFuture.failedFuture(new Exception("无法找到HTTP验证挑战"));
         }
         
         log.debug("开始处理域名验证挑战: token={}", challenge.getToken());
         
-        // 这里需要实现将challenge token和authorization放到web服务器指定径的逻辑
         // Let's Encrypt将访问 http://<domain>/.well-known/acme-challenge/<token>
         // 期望获得authorization
         String token = challenge.getToken();
-        String authorization = challenge.getAuthorization();
-        
-        // TODO: 实现保存challenge响应的逻辑
-        
-        // 触发验证
-        challenge.trigger();
-        
-        // 等待验证完成
-        while (challenge.getStatus() != Status.VALID) {
-            Thread.sleep(3000L);
-            challenge.update();
-        }
-    }
-    
-    private void importCertificateToKeystore(Certificate certificate, KeyPair domainKeyPair) throws Exception {
-        // 创建PKCS12密钥库
-        KeyStore keyStore = KeyStore.getInstance("PKCS12");
-        keyStore.load(null, null);
-        
-        // 获取证书链
-        X509Certificate[] chain = certificate.getCertificateChain()
-            .stream()
-            .map(cert -> (X509Certificate) cert)
-            .toArray(X509Certificate[]::new);
-        
-        // 导入私钥和证书链
-        keyStore.setKeyEntry("tomcat", 
-            domainKeyPair.getPrivate(),
-            "changeit".toCharArray(),
-            chain);
-        
-        // 保存密钥库到配置的路径
-        File keystoreFile = new File("domain.key");
-        try (FileOutputStream fos = new FileOutputStream(keystoreFile)) {
-            keyStore.store(fos, "changeit".toCharArray());
+        challengeStore.put(token, challenge.getAuthorization(), Duration.ofSeconds(challengeTtlSeconds));
+        
+        try {
+            // 触发验证
+            challenge.trigger();
+        } catch (AcmeException e) {
+            challengeStore.remove(token);
+            return CompletableFuture.failedFuture(e);
         }
         
-        log.info("证书已导入到密钥库: {}", keystoreFile.getAbsolutePath());
-        
-        // 动态启用HTTPS
-        dynamicSSLConfig.enableSSL(keystoreFile.getAbsolutePath(), "changeit");
+        // 交给共享轮询器等待验证完成，无论成败都清理验证响应
+        return acmePoller.awaitValid(challenge, challenge::getStatus, challenge::getError,
+                "域名验证[" + auth.getIdentifier().getDomain() + "]")
+            .whenComplete((v, e) -> challengeStore.remove(token));
     }
-} 
\ No newline at end of file
+}
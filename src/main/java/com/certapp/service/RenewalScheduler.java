@@ -0,0 +1,194 @@
+package com.certapp.service;
+
+import com.certapp.model.Certificate;
+import com.certapp.model.CertificateStatus;
+import com.certapp.repository.CertificateRepository;
+import com.certapp.repository.CertificateRepository.RenewalCandidate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 证书自动续期调度
+ * 内存中维护按续期截止时间排序的优先队列，只在队头到期（或需要重新加载）时唤醒；
+ * 每次唤醒最多续期 batch-size 个证书，并为每个任务加上随机抖动，避免同时冲击CA。
+ * 队列只保存即将到期的证书，通过 (status, not_after) 索引查询重建，重启后自动恢复。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RenewalScheduler {
+    private final CertificateRepository certificateRepository;
+    private final IssuanceWorker issuanceWorker;
+
+    @Value("${certapp.renewal.renew-before-days:30}")
+    private long renewBeforeDays;
+
+    @Value("${certapp.renewal.lookahead-days:7}")
+    private long lookaheadDays;
+
+    @Value("${certapp.renewal.batch-size:10}")
+    private int batchSize;
+
+    @Value("${certapp.renewal.batch-interval-seconds:60}")
+    private long batchIntervalSeconds;
+
+    @Value("${certapp.renewal.max-jitter-seconds:120}")
+    private long maxJitterSeconds;
+
+    private final PriorityQueue<RenewalItem> queue = new PriorityQueue<>(Comparator.comparing(item -> item.deadline));
+    private final Set<Long> queuedIds = new HashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "renewal-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> wakeup;
+    private Instant nextReload = Instant.EPOCH;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.execute(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 调度线程上执行：按需重新加载，续期到期的一批，然后睡到下一个时间点
+     */
+    private void run() {
+        try {
+            Instant now = Instant.now();
+            if (!now.isBefore(nextReload)) {
+                reload(now);
+            }
+            renewDueBatch(now);
+        } catch (RuntimeException e) {
+            log.error("续期调度执行失败", e);
+        }
+        reschedule();
+    }
+
+    /**
+     * 只查询续期窗口+预读窗口内的证书，更远的证书在下一次加载时进入队列
+     */
+    private void reload(Instant now) {
+        Instant horizon = now.plus(Duration.ofDays(renewBeforeDays + lookaheadDays));
+        List<RenewalCandidate> candidates = certificateRepository.findByStatusInAndNotAfterBefore(
+            List.of(CertificateStatus.ISSUED.name(), CertificateStatus.FAILED.name()),
+            LocalDateTime.ofInstant(horizon, ZoneId.systemDefault()));
+        int added = 0;
+        for (RenewalCandidate candidate : candidates) {
+            if (enqueue(candidate.getId(), candidate.getNotAfter())) {
+                added++;
+            }
+        }
+        nextReload = now.plus(Duration.ofDays(Math.max(1, lookaheadDays)).dividedBy(2));
+        log.info("续期队列已加载: 新增{}个, 队列共{}个, 下次加载时间 {}", added, queue.size(), nextReload);
+    }
+
+    private void renewDueBatch(Instant now) {
+        int submitted = 0;
+        while (submitted < batchSize && !queue.isEmpty() && !queue.peek().deadline.isAfter(now)) {
+            RenewalItem item = queue.poll();
+            queuedIds.remove(item.id);
+            long jitterMs = maxJitterSeconds <= 0 ? 0 : ThreadLocalRandom.current().nextLong(maxJitterSeconds * 1000);
+            scheduler.schedule(() -> renew(item), jitterMs, TimeUnit.MILLISECONDS);
+            submitted++;
+        }
+        if (submitted > 0) {
+            log.info("已提交{}个证书续期任务, 剩余队列{}个", submitted, queue.size());
+        }
+    }
+
+    private void renew(RenewalItem item) {
+        Certificate certificate = certificateRepository.findById(item.id).orElse(null);
+        // 证书可能已被删除、手动续期或正在签发，以数据库中的最新状态为准
+        if (certificate == null || certificate.getNotAfter() == null
+                || !certificate.getNotAfter().equals(item.notAfter)
+                || !(CertificateStatus.ISSUED.name().equals(certificate.getStatus())
+                     || CertificateStatus.FAILED.name().equals(certificate.getStatus()))) {
+            return;
+        }
+        try {
+            log.info("开始续期证书: id={}, domain={}, notAfter={}", certificate.getId(), certificate.getName(), certificate.getNotAfter());
+            issuanceWorker.renew(certificate);
+        } catch (RejectedExecutionException e) {
+            // 签发队列已满，下一批再试
+            log.warn("签发队列已满，推迟续期: id={}", certificate.getId());
+            enqueue(item.id, item.notAfter, Instant.now().plusSeconds(batchIntervalSeconds));
+            reschedule();
+        }
+    }
+
+    private boolean enqueue(Long id, LocalDateTime notAfter) {
+        if (notAfter == null) {
+            return false;
+        }
+        Instant deadline = notAfter.atZone(ZoneId.systemDefault()).toInstant().minus(Duration.ofDays(renewBeforeDays));
+        return enqueue(id, notAfter, deadline);
+    }
+
+    private boolean enqueue(Long id, LocalDateTime notAfter, Instant deadline) {
+        if (!queuedIds.add(id)) {
+            return false;
+        }
+        queue.add(new RenewalItem(id, notAfter, deadline));
+        return true;
+    }
+
+    /**
+     * 下一次唤醒时间：队头截止时间、下一批间隔和下一次重新加载中的最早者
+     */
+    private void reschedule() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant next = nextReload;
+        RenewalItem head = queue.peek();
+        if (head != null && head.deadline.isBefore(next)) {
+            next = head.deadline.isAfter(now) ? head.deadline : now.plusSeconds(batchIntervalSeconds);
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        long delayMs = Math.max(0, Duration.between(now, next).toMillis());
+        wakeup = scheduler.schedule(this::run, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static class RenewalItem {
+        final Long id;
+        final LocalDateTime notAfter;
+        final Instant deadline;
+
+        RenewalItem(Long id, LocalDateTime notAfter, Instant deadline) {
+            this.id = id;
+            this.notAfter = notAfter;
+            this.deadline = deadline;
+        }
+    }
+}
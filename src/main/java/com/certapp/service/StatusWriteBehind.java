@@ -0,0 +1,130 @@
+package com.certapp.service;
+
+import com.certapp.model.CertificateStatus;
+import com.certapp.repository.CertificateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 证书状态的写后队列
+ * SQLite 同一时间只允许一个写事务，多个签发线程各自提交短事务时会互相等待甚至报 SQLITE_BUSY。
+ * 这里把状态变更先放进按证书ID合并的缓冲区（同一证书只保留最新状态），
+ * 由唯一的写线程定期批量写入，一个事务提交多条更新。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatusWriteBehind {
+    /**
+     * 与 CertificateRepository.updateStatus 相同的语句，每次状态变更都分配新的变更版本号
+     */
+    public static final String UPDATE_SQL =
+        "update certificates set status = ?, description = ?, updated_at = ?, "
+            + "change_version = (select coalesce(max(change_version), 0) + 1 from certificates) where id = ?";
+
+    private final CertificateRepository certificateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${certapp.persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${certapp.persistence.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${certapp.persistence.write-behind.batch-size:200}")
+    private int batchSize;
+
+    private final Map<Long, PendingStatus> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "status-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer != null) {
+            writer.shutdown();
+            flushSafely();
+        }
+    }
+
+    /**
+     * 记录一次状态变更；未启用写后队列时直接写库
+     */
+    public void update(Long id, CertificateStatus status, String description) {
+        if (!enabled) {
+            certificateRepository.updateStatus(id, status.name(), description, LocalDateTime.now());
+            return;
+        }
+        pending.put(id, new PendingStatus(status.name(), description, LocalDateTime.now()));
+    }
+
+    private synchronized void flushSafely() {
+        try {
+            while (!pending.isEmpty()) {
+                flushBatch();
+            }
+        } catch (RuntimeException e) {
+            log.error("批量写入证书状态失败", e);
+        }
+    }
+
+    private void flushBatch() {
+        List<Object[]> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Map.Entry<Long, PendingStatus>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<Long, PendingStatus> entry = iterator.next();
+            PendingStatus status = entry.getValue();
+            // 只有值未被并发替换时才移除，否则留给下一批写入最新值
+            if (pending.remove(entry.getKey(), status)) {
+                batch.add(new Object[]{status.status, status.description,
+                    Timestamp.valueOf(status.updatedAt), entry.getKey()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(UPDATE_SQL, batch));
+        log.debug("批量写入证书状态: {}条", batch.size());
+    }
+
+    private static class PendingStatus {
+        final String status;
+        final String description;
+        final LocalDateTime updatedAt;
+
+        PendingStatus(String status, String description, LocalDateTime updatedAt) {
+            this.status = status;
+            this.description = description;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -39,6 +39,26 @@ const API = {
                 method: 'POST',
                 body: JSON.stringify(data)
             });
+        },
+
+        // 一键申请只负责入队，立即返回证书记录（状态为 QUEUED，命中最近签发的证书时为 ISSUED）
+        async oneClick(data) {
+            return API.request('/certificates/one-click', {
+                method: 'POST',
+                body: JSON.stringify(data)
+            });
+        },
+
+        // 订阅状态变更（SSE），id 为空时订阅全部证书；返回 EventSource，调用 close() 取消订阅
+        // onStatus 收到 {id, status, description, timestamp}；onResync 表示有事件丢失，应重新拉取列表
+        watch(id, onStatus, onResync) {
+            const query = id ? `?id=${encodeURIComponent(id)}` : '';
+            const source = new EventSource(API.baseUrl + '/certificates/events' + query);
+            source.addEventListener('status', event => onStatus(JSON.parse(event.data)));
+            if (onResync) {
+                source.addEventListener('resync', () => onResync());
+            }
+            return source;
         }
     }
 }; 
\ No newline at end of file
@@ -8,25 +8,36 @@ document.addEventListener('DOMContentLoaded', function() {
         // 收集表单数据
         const formData = new FormData(this);
         const data = Object.fromEntries(formData.entries());
+        const submitBtn = this.querySelector('[type="submit"]');
+        const buttonText = submitBtn.textContent;
+        const statusText = document.getElementById('applyStatus');
 
         try {
             // 显示加载状态
-            const submitBtn = this.querySelector('[type="submit"]');
             submitBtn.disabled = true;
             submitBtn.textContent = '提交中...';
 
-            // 发送请求
-            const result = await API.certificates.apply(data);
-            
-            // 显示成功消息
-            alert('证书申请提交成功！');
-            window.location.href = '/list.html';
+            // 申请只负责入队，签发进度通过事件流推送，不再长时间占用一个请求
+            const certificate = await API.certificates.oneClick(data);
+            submitBtn.textContent = '签发中...';
+            const result = await waitForIssuance(certificate, event => {
+                if (statusText) {
+                    statusText.textContent = event.description || event.status;
+                }
+            });
+
+            if (result.status === 'ISSUED') {
+                alert('证书签发成功！');
+                window.location.href = '/list.html';
+            } else {
+                alert('证书申请失败：' + (result.description || result.status));
+            }
         } catch (error) {
             alert('提交失败：' + error.message);
         } finally {
             // 恢复按钮状态
             submitBtn.disabled = false;
-            submitBtn.textContent = '提交申请';
+            submitBtn.textContent = buttonText;
         }
     });
 
@@ -54,6 +65,12 @@ function validateField(field) {
         return false;
     }
 
+    if (field.id === 'domain' && !isValidDomain(field.value)) {
+        formGroup.classList.add('error');
+        errorMessage.textContent = '请输入有效的域名';
+        return false;
+    }
+
     formGroup.classList.remove('error');
     errorMessage.textContent = '';
     return true;
@@ -61,4 +78,84 @@ function validateField(field) {
 
 function isValidEmail(email) {
     return /^[^\s@]+@[^\s@]+\.[^\s@]+$/.test(email);
-} 
\ No newline at end of file
+}
+
+function isValidDomain(domain) {
+    return /^([a-zA-Z0-9]([a-zA-Z0-9\-]{0,61}[a-zA-Z0-9])?\.)+[a-zA-Z]{2,}$/.test(domain);
+}
+
+// 等待签发结果的上限，超过后提示用户到列表页查看
+const ISSUANCE_TIMEOUT_MS = 10 * 60 * 1000;
+// 事件流不可用时退回定时查询的间隔
+const ISSUANCE_POLL_INTERVAL_MS = 3000;
+
+function isTerminalStatus(status) {
+    return status === 'ISSUED' || status === 'FAILED';
+}
+
+// 等待证书进入终态（ISSUED/FAILED），期间的状态变化交给 onProgress
+function waitForIssuance(certificate, onProgress) {
+    if (isTerminalStatus(certificate.status)) {
+        return Promise.resolve(certificate);
+    }
+    return new Promise((resolve, reject) => {
+        let done = false;
+        let pollTimer = null;
+        const timeout = setTimeout(() => finish(null, new Error('等待签发结果超时，请稍后在证书列表中查看')),
+            ISSUANCE_TIMEOUT_MS);
+
+        function finish(result, error) {
+            if (done) return;
+            done = true;
+            clearTimeout(timeout);
+            clearTimeout(pollTimer);
+            source.close();
+            if (error) {
+                reject(error);
+            } else {
+                resolve(result);
+            }
+        }
+
+        // 查询一次当前状态，已是终态时结束
+        function check() {
+            return API.certificates.getById(certificate.id).then(current => {
+                if (done) return;
+                onProgress(current);
+                if (isTerminalStatus(current.status)) {
+                    finish(current);
+                }
+            });
+        }
+
+        // 查询失败时继续重试，直到拿到终态或超时
+        function poll() {
+            if (done) return;
+            check().catch(() => {}).finally(() => {
+                if (!done) {
+                    pollTimer = setTimeout(poll, ISSUANCE_POLL_INTERVAL_MS);
+                }
+            });
+        }
+
+        const source = API.certificates.watch(certificate.id, event => {
+            onProgress(event);
+            if (isTerminalStatus(event.status)) {
+                finish(event);
+            }
+        }, () => {
+            // 有事件丢失时查询一次当前状态
+            check().catch(error => finish(null, error));
+        });
+        // 连接（包括断线重连）建立后补查一次：终态事件可能发生在订阅之前，或已滚出服务端的事件缓冲区
+        source.addEventListener('open', () => {
+            check().catch(() => {});
+        });
+        source.addEventListener('error', () => {
+            // 断线时 EventSource 会自动重连；CLOSED 说明不会再重连（例如订阅数已满返回 503），改为定时查询
+            if (source.readyState === EventSource.CLOSED) {
+                poll();
+            }
+        });
+    });
+}